@@ -0,0 +1,33 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * VisionBenchmark on real frames: cycles through a FrameRecorder file, given
+ * with -p recording=/path/to/vision.rec. There is no default, so it only
+ * runs when asked for.
+ */
+public class RecordedVisionBenchmark extends VisionBenchmark {
+
+	@Param
+	String recording;
+
+	PixelFrame[] load(JavaVisionBackend backend) throws Exception {
+		ReplaySource source = new ReplaySource(new File(recording), backend, false, false);
+		List<PixelFrame> loaded = new ArrayList<PixelFrame>();
+		while (!source.isFinished()) {
+			PixelFrame f = (PixelFrame) backend.createFrame();
+			if (source.grab(f))
+				loaded.add(f);
+		}
+		source.close();
+		if (loaded.isEmpty())
+			throw new IllegalArgumentException("no frames in " + recording);
+		return loaded.toArray(new PixelFrame[loaded.size()]);
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.Arrays;
+
+/**
+ * Draws test frames with a known number of particles. Half of them (rounded
+ * up) are bars that pass the size filter (51 x 4, on a grid across the top
+ * half); the rest are 2 x 2 specks on a grid below, which the filter throws
+ * away. So pairing sees more targets as the particle count grows.
+ * <p>
+ * Bars in a grid row sit 0, 1 or 2 pixels apart in y and rows are 6 pixels
+ * apart, so each bar is within Target.PAIR_RANGE of the rest of its row and
+ * of some of the next row. At 500 particles that is more pairs than
+ * PairingEngine.MAX_PAIRS, so the frame also covers the capped case.
+ */
+public class SyntheticFrames {
+
+	static final int TAPE = 0xC8FFFF; // inside ColorThreshold.TAPE
+	static final int BAR_WIDTH = 51;
+	static final int BAR_HEIGHT = 4;
+	static final int BAR_COLUMN = 53; // grid cell, bar plus a gap
+	static final int BAR_ROW = 6;
+	static final int SPECK_SPACING = 3;
+
+	/** Bars that fit in the top half of a width x height frame. */
+	static int barCapacity(int width, int height) {
+		return (width / BAR_COLUMN) * (height / 2 / BAR_ROW);
+	}
+
+	/** Specks that fit in the bottom half, clear of the bars. */
+	static int speckCapacity(int width, int height) {
+		return (width / SPECK_SPACING) * ((height - speckTop(height)) / SPECK_SPACING);
+	}
+
+	private static int speckTop(int height) {
+		return height / 2 + 1;
+	}
+
+	/** The most particles draw() can place in a width x height frame. */
+	static int capacity(int width, int height) {
+		return barCapacity(width, height) + speckCapacity(width, height);
+	}
+
+	/** Particles drawn as bars, out of a total. */
+	static int bars(int particles, int width, int height) {
+		return Math.min((particles + 1) / 2, barCapacity(width, height));
+	}
+
+	static void draw(PixelFrame frame, int particles) {
+		int bars = bars(particles, frame.width, frame.height);
+		if (particles - bars > speckCapacity(frame.width, frame.height))
+			throw new IllegalArgumentException(particles + " particles don't fit in the frame");
+
+		Arrays.fill(frame.pixels, 0);
+		int columns = frame.width / BAR_COLUMN;
+		for (int i = 0; i < bars; i++) {
+			int column = i % columns;
+			int x = column * BAR_COLUMN;
+			int y = (i / columns) * BAR_ROW + column % 3;
+			fill(frame, x, y, BAR_WIDTH, BAR_HEIGHT);
+		}
+
+		columns = frame.width / SPECK_SPACING;
+		int top = speckTop(frame.height);
+		for (int i = 0; i < particles - bars; i++) {
+			int x = (i % columns) * SPECK_SPACING;
+			int y = top + (i / columns) * SPECK_SPACING;
+			fill(frame, x, y, 2, 2);
+		}
+	}
+
+	private static void fill(PixelFrame frame, int left, int top, int width, int height) {
+		for (int y = top; y < top + height; y++)
+			Arrays.fill(frame.pixels, y * frame.width + left, y * frame.width + left + width, TAPE);
+	}
+
+}
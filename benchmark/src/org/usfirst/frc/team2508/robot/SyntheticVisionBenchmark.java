@@ -0,0 +1,20 @@
+package org.usfirst.frc.team2508.robot;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * VisionBenchmark on a frame drawn by SyntheticFrames, so each stage can be
+ * measured at several particle densities.
+ */
+public class SyntheticVisionBenchmark extends VisionBenchmark {
+
+	@Param({ "0", "5", "50", "500" })
+	int particles;
+
+	PixelFrame[] load(JavaVisionBackend backend) {
+		PixelFrame frame = (PixelFrame) backend.createFrame();
+		SyntheticFrames.draw(frame, particles);
+		return new PixelFrame[] { frame };
+	}
+
+}
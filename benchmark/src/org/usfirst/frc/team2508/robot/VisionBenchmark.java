@@ -0,0 +1,177 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-stage cost of the vision hot path on the pure Java backends. Each
+ * stage runs on the output of the stages before it, prepared in setup, so
+ * the numbers can be added up to the cost of a frame.
+ * <p>
+ * Where the frames come from is up to the subclass:
+ * SyntheticVisionBenchmark draws them with a given particle count, and
+ * RecordedVisionBenchmark cycles through a FrameRecorder file. Run with
+ * -prof gc to get allocation rates. The legacy benchmarks are the original
+ * operatorControl() code, kept as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class VisionBenchmark {
+
+	static final int WIDTH = 320;
+	static final int HEIGHT = 240;
+
+	@Param({ "java", "parallel" })
+	String backendName;
+
+	JavaVisionBackend backend;
+	PixelFrame[] frames;
+	int next;
+
+	PixelFrame frame;
+	Region region = new Region();
+	TargetBuffer measured = new TargetBuffer();
+	TargetBuffer filtered = new TargetBuffer();
+	TargetBuffer scratch = new TargetBuffer();
+	PairingEngine pairing = new PairingEngine();
+	DecimatedMeasurer decimated = new DecimatedMeasurer();
+	Pair pair;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		backend = "parallel".equals(backendName)
+				? new ParallelVisionBackend(WIDTH, HEIGHT)
+				: new JavaVisionBackend(WIDTH, HEIGHT);
+
+		frames = load(backend);
+		decimated.setFactor(2);
+	}
+
+	/** The frames to cycle through, one per iteration. */
+	abstract PixelFrame[] load(JavaVisionBackend backend) throws Exception;
+
+	/** Runs every stage once so each benchmark starts from real input. */
+	@Setup(Level.Iteration)
+	public void prepare() {
+		frame = frames[next++ % frames.length];
+		region.setFull(frame.width, frame.height);
+		backend.threshold(frame, ColorThreshold.TAPE, region);
+		backend.measure(frame, region, measured);
+		copy(measured, filtered);
+		filtered.filter(VisionPipeline.MIN_HEIGHT, VisionPipeline.MIN_WIDTH);
+		pairing.pair(filtered);
+		pair = pairing.size() > 0 ? pairing.get(filtered, 0)
+				: new Pair(new Target(10, 10, 70, 6, 420), new Target(160, 12, 70, 6, 420));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (backend instanceof ParallelVisionBackend)
+			((ParallelVisionBackend) backend).shutdown();
+	}
+
+	// -------------------------------------------------------------
+	// Stages
+	// -------------------------------------------------------------
+	@Benchmark
+	public PixelFrame threshold() {
+		backend.threshold(frame, ColorThreshold.TAPE, region);
+		return frame;
+	}
+
+	@Benchmark
+	public int measure() {
+		return backend.measure(frame, region, scratch);
+	}
+
+	@Benchmark
+	public int measureDecimated() {
+		return decimated.measure(backend, frame, ColorThreshold.TAPE, region, scratch);
+	}
+
+	/** Includes copying the unfiltered rows, since filter works in place. */
+	@Benchmark
+	public int filter() {
+		copy(measured, scratch);
+		scratch.filter(VisionPipeline.MIN_HEIGHT, VisionPipeline.MIN_WIDTH);
+		return scratch.size;
+	}
+
+	@Benchmark
+	public int pair() {
+		return pairing.pair(filtered);
+	}
+
+	@Benchmark
+	public double angle() {
+		return pair.getAngle();
+	}
+
+	@Benchmark
+	public double frame() {
+		backend.threshold(frame, ColorThreshold.TAPE, region);
+		backend.measure(frame, region, scratch);
+		scratch.filter(VisionPipeline.MIN_HEIGHT, VisionPipeline.MIN_WIDTH);
+		return pairing.pair(scratch) > 0 ? pairing.get(scratch, 0).getAngle() : 0;
+	}
+
+	// -------------------------------------------------------------
+	// Baseline: the original operatorControl() filter and pairing
+	// -------------------------------------------------------------
+	@Benchmark
+	public int legacyFilter() {
+		List<Target> targets = new ArrayList<Target>();
+		for (int i = 0; i < measured.size; i++) {
+			if (measured.height[i] > 3 && measured.width[i] > 50)
+				targets.add(measured.get(i));
+		}
+		return targets.size();
+	}
+
+	@Benchmark
+	public int legacyPair() {
+		List<Target> targets = new ArrayList<Target>();
+		for (int i = 0; i < filtered.size; i++)
+			targets.add(filtered.get(i));
+
+		List<Pair> pairs = new ArrayList<Pair>();
+		for (Target target : targets) {
+			for (Target test : targets) {
+				if (target == test)
+					continue;
+
+				if (test.isPair(target) && !pairs.contains(test)) {
+					pairs.add(new Pair(target, test));
+					break;
+				}
+			}
+		}
+		return pairs.size();
+	}
+
+	static void copy(TargetBuffer from, TargetBuffer to) {
+		to.clear();
+		for (int i = 0; i < from.size; i++)
+			to.add(from.x[i], from.y[i], from.width[i], from.height[i], from.area[i]);
+	}
+
+}
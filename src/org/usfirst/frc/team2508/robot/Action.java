@@ -0,0 +1,29 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * A command run by the ActionEngine on one of its worker threads, owning the
+ * actuators it was created with until it returns. Waits should go through
+ * {@link ActionHandle#delay(double)} so that cancelling the action ends them;
+ * put actuators back in a safe state in a finally block.
+ */
+public abstract class Action {
+
+	final String name;
+	final Actuator[] needs;
+
+	protected Action(String name, Actuator... needs) {
+		this.name = name;
+		this.needs = needs;
+	}
+
+	/**
+	 * @throws InterruptedException when cancelled while waiting
+	 */
+	protected abstract void run(ActionHandle handle) throws InterruptedException;
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,173 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Actions on a fixed pool of worker threads instead of a new thread per
+ * command. An action only starts once it owns every actuator it needs, and
+ * actions that need the same actuator start in the order they were
+ * submitted, so two commands can never drive the lift at once. Actions
+ * waiting for an actuator do not hold a worker.
+ * <p>
+ * At most MAX_ACTIONS actions may be pending or running at a time; further
+ * submissions come back already cancelled and are counted as rejected.
+ */
+public class ActionEngine {
+
+	static final int WORKERS = 4;
+	static final int MAX_ACTIONS = 32;
+
+	private final ThreadPoolExecutor executor;
+	private final List<ActionHandle> pending = new ArrayList<ActionHandle>(); // submission order
+	private final List<ActionHandle> running = new ArrayList<ActionHandle>(); // handed to the executor
+	private final EnumSet<Actuator> owned = EnumSet.noneOf(Actuator.class);
+
+	// Statistics
+	volatile long submitted;
+	volatile long rejected;
+	volatile long failed;
+
+	public ActionEngine() {
+		executor = new ThreadPoolExecutor(WORKERS, WORKERS, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_ACTIONS), new ThreadFactory() {
+					private int count;
+
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Action-" + count++);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.prestartAllCoreThreads();
+	}
+
+	public ActionHandle submit(Action action) {
+		ActionHandle handle = new ActionHandle(this, action);
+		submit(handle);
+		return handle;
+	}
+
+	void submit(ActionHandle handle) {
+		synchronized (this) {
+			if (pending.size() + running.size() >= MAX_ACTIONS) {
+				rejected++;
+			} else {
+				pending.add(handle);
+				submitted++;
+				dispatch();
+				return;
+			}
+		}
+		handle.cancel();
+	}
+
+	/**
+	 * Cancels everything pending or running, then waits up to timeout
+	 * seconds for the running actions to finish cleaning up, so whatever
+	 * the caller commands next is not undone by a late finally block.
+	 * 
+	 * @return false if something was still running at the timeout
+	 */
+	public boolean cancelAll(double timeout) {
+		List<ActionHandle> all;
+		synchronized (this) {
+			all = new ArrayList<ActionHandle>(pending);
+			all.addAll(running);
+		}
+		for (ActionHandle handle : all)
+			handle.cancel();
+
+		long end = System.nanoTime() + (long) (timeout * 1e9);
+		try {
+			for (ActionHandle handle : all) {
+				if (!handle.await((end - System.nanoTime()) / 1e9))
+					return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+
+	public synchronized boolean isOwned(Actuator actuator) {
+		return owned.contains(actuator);
+	}
+
+	/** A pending handle was cancelled. */
+	synchronized void withdraw(ActionHandle handle) {
+		if (pending.remove(handle))
+			dispatch();
+	}
+
+	/**
+	 * Starts every pending action whose actuators are free and not wanted by
+	 * an earlier pending action.
+	 */
+	private void dispatch() {
+		EnumSet<Actuator> blocked = EnumSet.copyOf(owned);
+		for (int i = 0; i < pending.size(); i++) {
+			final ActionHandle handle = pending.get(i);
+			Actuator[] needs = handle.action.needs;
+			boolean free = true;
+			for (Actuator a : needs) {
+				if (blocked.contains(a))
+					free = false;
+			}
+			for (Actuator a : needs)
+				blocked.add(a); // later actions queue behind this one either way
+			if (!free)
+				continue;
+
+			pending.remove(i--);
+			for (Actuator a : needs)
+				owned.add(a);
+			running.add(handle);
+			// Never rejected: the queue holds MAX_ACTIONS, more than can be running
+			executor.execute(new Runnable() {
+				public void run() {
+					execute(handle);
+				}
+			});
+		}
+	}
+
+	private void execute(ActionHandle handle) {
+		boolean error = false;
+		try {
+			if (handle.start(Thread.currentThread()))
+				handle.action.run(handle);
+		} catch (InterruptedException e) {
+			// cancelled
+		} catch (RuntimeException e) {
+			error = true;
+			failed++;
+			e.printStackTrace();
+		} finally {
+			synchronized (this) {
+				release(handle);
+				dispatch();
+			}
+			handle.finish(error);
+		}
+	}
+
+	private void release(ActionHandle handle) {
+		running.remove(handle);
+		for (Actuator a : handle.action.needs)
+			owned.remove(a);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ActionEngine{pending=" + pending.size() + ",running=" + running.size() + ",owned=" + owned
+				+ ",submitted=" + submitted + ",rejected=" + rejected + ",failed=" + failed + "}";
+	}
+
+}
@@ -0,0 +1,165 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One submission of an Action to the ActionEngine: wait for it, cancel it,
+ * or chain further actions behind it.
+ */
+public class ActionHandle {
+
+	enum State {
+		PENDING, // waiting for its actuators or a worker
+		RUNNING,
+		DONE,
+		CANCELLED,
+		FAILED,
+	}
+
+	final Action action;
+	private final ActionEngine engine;
+	private State state = State.PENDING;
+	private boolean cancelRequested; // running, interrupted, not finished yet
+	private Thread worker;
+	private List<Action> next; // submitted once this finishes normally
+	private List<ActionHandle> nextHandles;
+
+	ActionHandle(ActionEngine engine, Action action) {
+		this.engine = engine;
+		this.action = action;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public synchronized boolean isDone() {
+		return state == State.DONE || state == State.CANCELLED || state == State.FAILED;
+	}
+
+	/** True once cancel() has been called, even if it has not finished yet. */
+	public synchronized boolean isCancelled() {
+		return state == State.CANCELLED || cancelRequested;
+	}
+
+	/**
+	 * Waits for the action to finish, however it finishes.
+	 * 
+	 * @return false if it was still going after timeout seconds
+	 */
+	public synchronized boolean await(double timeout) throws InterruptedException {
+		long end = System.nanoTime() + (long) (timeout * 1e9);
+		while (!isDone()) {
+			long remaining = end - System.nanoTime();
+			if (remaining <= 0)
+				return false;
+			wait(remaining / 1000000, (int) (remaining % 1000000));
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the action: a pending one never starts, a running one is
+	 * interrupted. A running action still owns its actuators until its
+	 * cleanup has run, so it only counts as done (and CANCELLED) once it has
+	 * returned; use await() to wait for that. Actions chained behind it are
+	 * cancelled too.
+	 */
+	public void cancel() {
+		List<ActionHandle> chained;
+		synchronized (this) {
+			if (isDone() || cancelRequested)
+				return;
+			if (state == State.RUNNING) {
+				cancelRequested = true;
+				worker.interrupt();
+			} else {
+				state = State.CANCELLED;
+				notifyAll();
+				engine.withdraw(this);
+			}
+			chained = nextHandles;
+			nextHandles = null;
+			next = null;
+		}
+		if (chained != null) {
+			for (ActionHandle h : chained)
+				h.cancel();
+		}
+	}
+
+	/**
+	 * Submits action once this one finishes normally; if this one is
+	 * cancelled or fails, the returned handle is cancelled.
+	 */
+	public ActionHandle then(Action action) {
+		ActionHandle handle = new ActionHandle(engine, action);
+		synchronized (this) {
+			if (!isDone()) {
+				if (next == null) {
+					next = new ArrayList<Action>();
+					nextHandles = new ArrayList<ActionHandle>();
+				}
+				next.add(action);
+				nextHandles.add(handle);
+				return handle;
+			}
+		}
+		if (getState() == State.DONE)
+			engine.submit(handle);
+		else
+			handle.cancel();
+		return handle;
+	}
+
+	/**
+	 * Sleeps inside a running action.
+	 * 
+	 * @throws InterruptedException if the action is cancelled meanwhile
+	 */
+	public void delay(double seconds) throws InterruptedException {
+		long millis = (long) (seconds * 1000);
+		Thread.sleep(millis);
+	}
+
+	// -------------------------------------------------------------
+	// Called by the ActionEngine
+	// -------------------------------------------------------------
+	synchronized boolean start(Thread worker) {
+		if (state != State.PENDING)
+			return false;
+		state = State.RUNNING;
+		this.worker = worker;
+		return true;
+	}
+
+	void finish(boolean failed) {
+		List<ActionHandle> chained;
+		synchronized (this) {
+			worker = null;
+			if (state == State.RUNNING)
+				state = cancelRequested ? State.CANCELLED : failed ? State.FAILED : State.DONE;
+			chained = nextHandles;
+			nextHandles = null;
+			next = null;
+			notifyAll();
+		}
+		Thread.interrupted(); // don't leak a late cancel into the next action
+		if (chained != null) {
+			boolean done = getState() == State.DONE;
+			for (ActionHandle h : chained) {
+				if (done)
+					engine.submit(h);
+				else
+					h.cancel();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ActionHandle{" + action + "," + getState() + "}";
+	}
+
+}
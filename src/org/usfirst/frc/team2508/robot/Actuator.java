@@ -0,0 +1,14 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Mechanisms an Action can own. The ActionEngine runs at most one action
+ * per actuator at a time.
+ */
+public enum Actuator {
+
+	DRIVE,
+	LIFT,
+	ARMS,
+	CLAMP,
+
+}
@@ -0,0 +1,144 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Turns Pair geometry into an angle (from the pair's height-to-width ratio)
+ * and a range (from the targets' height in pixels) using calibration tables.
+ * Inputs outside the calibrated range are clamped to its ends and flagged.
+ * <p>
+ * Calibrations are plain text files, one sample per line:
+ * 
+ * <pre>
+ * # kind  input  output
+ * angle   1.20   19.5    (height/width ratio, degrees)
+ * range   18     2.4     (target height in pixels, meters)
+ * </pre>
+ * 
+ * and can be swapped with {@link #load(File)} while the robot runs; readers
+ * never block. Until a range calibration is loaded, range is NaN.
+ */
+public class AngleEstimator {
+
+	// The original fit, -89.85x^2 + 313.72x - 219.194, is only meaningful on
+	// its rising branch, from where it crosses 0 degrees up to its peak.
+	static final double A = -89.85, B = 313.72, C = -219.194;
+	static final double FIT_MIN = (-B + Math.sqrt(B * B - 4 * A * C)) / (2 * A);
+	static final double FIT_MAX = -B / (2 * A);
+	static final int FIT_SAMPLES = 32;
+
+	private static final AngleEstimator instance = new AngleEstimator();
+
+	private volatile LookupTable angle = fitTable();
+	private volatile LookupTable range = null;
+
+	public static AngleEstimator getInstance() {
+		return instance;
+	}
+
+	/** Angle in degrees for a height-to-width ratio, clamped to the calibration. */
+	public double angle(double ratio) {
+		return angle.get(ratio);
+	}
+
+	public boolean isAngleCalibrated(double ratio) {
+		return angle.contains(ratio);
+	}
+
+	/** Distance in meters for a target height in pixels, or NaN if uncalibrated. */
+	public double range(double height) {
+		LookupTable table = range;
+		return table == null ? Double.NaN : table.get(height);
+	}
+
+	public boolean isRangeCalibrated(double height) {
+		LookupTable table = range;
+		return table != null && table.contains(height);
+	}
+
+	/**
+	 * Replaces the tables that the file has samples for (at least two each).
+	 * On any error the current tables are kept.
+	 */
+	public void load(File file) throws IOException {
+		List<double[]> angles = new ArrayList<double[]>();
+		List<double[]> ranges = new ArrayList<double[]>();
+
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				int comment = line.indexOf('#');
+				if (comment >= 0)
+					line = line.substring(0, comment);
+				line = line.trim();
+				if (line.isEmpty())
+					continue;
+
+				String[] parts = line.split("[\\s,]+");
+				if (parts.length != 3)
+					throw new IOException(file + ":" + number + ": expected kind, input, output");
+				double[] sample;
+				try {
+					sample = new double[] { Double.parseDouble(parts[1]), Double.parseDouble(parts[2]) };
+				} catch (NumberFormatException e) {
+					throw new IOException(file + ":" + number + ": " + e.getMessage());
+				}
+
+				if (parts[0].equals("angle"))
+					angles.add(sample);
+				else if (parts[0].equals("range"))
+					ranges.add(sample);
+				else
+					throw new IOException(file + ":" + number + ": unknown kind " + parts[0]);
+			}
+		} finally {
+			reader.close();
+		}
+
+		try {
+			LookupTable newAngle = angles.size() >= 2 ? table(angles) : angle;
+			LookupTable newRange = ranges.size() >= 2 ? table(ranges) : range;
+			angle = newAngle;
+			range = newRange;
+		} catch (IllegalArgumentException e) {
+			throw new IOException(file + ": " + e.getMessage());
+		}
+	}
+
+	private static LookupTable table(List<double[]> samples) {
+		Collections.sort(samples, new Comparator<double[]>() {
+			public int compare(double[] a, double[] b) {
+				return Double.compare(a[0], b[0]);
+			}
+		});
+		double[] xs = new double[samples.size()];
+		double[] ys = new double[samples.size()];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = samples.get(i)[0];
+			ys[i] = samples.get(i)[1];
+		}
+		return new LookupTable(xs, ys);
+	}
+
+	private static LookupTable fitTable() {
+		double[] xs = new double[FIT_SAMPLES];
+		double[] ys = new double[FIT_SAMPLES];
+		for (int i = 0; i < FIT_SAMPLES; i++) {
+			double x = FIT_MIN + (FIT_MAX - FIT_MIN) * i / (FIT_SAMPLES - 1);
+			xs[i] = x;
+			ys[i] = A * x * x + B * x + C;
+		}
+		return new LookupTable(xs, ys);
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs AutoStates one after another from a fixed-rate loop. Each
+ * {@link #tick(long)} polls the current state; when it is done, or its time
+ * budget has run out, it is exited and the next one entered in the same
+ * tick. Nothing here blocks, so the calling loop keeps its rate.
+ * <p>
+ * Every transition is recorded (state, time entered, whether the state
+ * before it timed out) in preallocated arrays for the dashboard and logs.
+ */
+public class AutoRoutine {
+
+	static final int MAX_TRANSITIONS = 64;
+
+	private final List<AutoState> states = new ArrayList<AutoState>();
+	private int current = -1;
+	private long started;
+	private long entered;
+
+	// Transition record
+	final int[] transitionState = new int[MAX_TRANSITIONS];
+	final long[] transitionTime = new long[MAX_TRANSITIONS]; // ns since start
+	final boolean[] transitionTimedOut = new boolean[MAX_TRANSITIONS];
+	int transitions;
+	int timeouts;
+
+	/** Adds a state to the end of the routine. */
+	public AutoRoutine then(AutoState state) {
+		states.add(state);
+		return this;
+	}
+
+	public void start(long now) {
+		started = now;
+		transitions = 0;
+		timeouts = 0;
+		current = -1;
+		advance(now, false);
+	}
+
+	/** Polls the current state and moves on if it is finished. */
+	public void tick(long now) {
+		while (current >= 0 && current < states.size()) {
+			AutoState state = states.get(current);
+			double elapsed = (now - entered) / 1e9;
+			boolean done = state.isDone(now, elapsed);
+			boolean timedOut = !done && elapsed > state.budget;
+			if (!done && !timedOut)
+				return;
+
+			state.exit(timedOut);
+			if (timedOut)
+				timeouts++;
+			advance(now, timedOut);
+		}
+	}
+
+	/** Exits the current state early, e.g. when autonomous ends. */
+	public void stop() {
+		if (current >= 0 && current < states.size())
+			states.get(current).exit(true);
+		current = states.size();
+	}
+
+	public boolean isFinished() {
+		return current >= states.size();
+	}
+
+	/** Id of the current state, or -1 once finished. */
+	public int getStateId() {
+		return isFinished() || current < 0 ? -1 : states.get(current).id;
+	}
+
+	public String getStateName() {
+		return isFinished() || current < 0 ? "done" : states.get(current).name;
+	}
+
+	private void advance(long now, boolean timedOut) {
+		current++;
+		entered = now;
+		if (transitions < MAX_TRANSITIONS) {
+			transitionState[transitions] = isFinished() ? -1 : states.get(current).id;
+			transitionTime[transitions] = now - started;
+			transitionTimedOut[transitions] = timedOut;
+			transitions++;
+		}
+		if (!isFinished())
+			states.get(current).enter(now);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("AutoRoutine{");
+		for (int i = 0; i < transitions; i++) {
+			if (i > 0)
+				s.append(',');
+			s.append(transitionState[i]).append('@').append(transitionTime[i] / 1000000).append("ms");
+			if (transitionTimedOut[i])
+				s.append("(after timeout)");
+		}
+		return s.append('}').toString();
+	}
+
+}
@@ -0,0 +1,131 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * One step of an AutoRoutine. A state is entered once, then polled every
+ * tick until it reports done or runs past its time budget, then exited. No
+ * method may block: anything slow goes to the ActionEngine and is polled.
+ * The static factories cover the usual completion conditions: time, a
+ * sensor, an action, or several states at once.
+ */
+public abstract class AutoState {
+
+	/** A sensor check, polled once per tick. */
+	public interface Condition {
+		boolean isMet();
+	}
+
+	final int id; // shown as "Auto State: "
+	final String name;
+	final double budget; // seconds before the routine moves on regardless
+
+	protected AutoState(int id, String name, double budget) {
+		this.id = id;
+		this.name = name;
+		this.budget = budget;
+	}
+
+	protected void enter(long now) {
+	}
+
+	/** @param elapsed seconds since enter */
+	protected abstract boolean isDone(long now, double elapsed);
+
+	/** @param timedOut true if the budget ran out first */
+	protected void exit(boolean timedOut) {
+	}
+
+	@Override
+	public String toString() {
+		return id + " " + name;
+	}
+
+	// -------------------------------------------------------------
+	// Completion conditions
+	// -------------------------------------------------------------
+	/** Done after a fixed time. */
+	public static AutoState waitFor(int id, String name, final double seconds) {
+		return new AutoState(id, name, seconds + 1) {
+			protected boolean isDone(long now, double elapsed) {
+				return elapsed >= seconds;
+			}
+		};
+	}
+
+	/** Done once the condition holds. */
+	public static AutoState until(int id, String name, double budget, final Condition condition) {
+		return new AutoState(id, name, budget) {
+			protected boolean isDone(long now, double elapsed) {
+				return condition.isMet();
+			}
+		};
+	}
+
+	/** Submits the action on entry; done when it finishes, cancelled on timeout. */
+	public static AutoState action(int id, String name, double budget, final ActionEngine engine,
+			final Action action) {
+		return new AutoState(id, name, budget) {
+			private ActionHandle handle;
+
+			protected void enter(long now) {
+				handle = engine.submit(action);
+			}
+
+			protected boolean isDone(long now, double elapsed) {
+				return handle.isDone();
+			}
+
+			protected void exit(boolean timedOut) {
+				handle.cancel();
+			}
+		};
+	}
+
+	/**
+	 * Runs several states side by side; done when all are. Each child still
+	 * keeps to its own budget.
+	 */
+	public static AutoState parallel(int id, String name, double budget, final AutoState... states) {
+		return new AutoState(id, name, budget) {
+			private final long[] entered = new long[states.length];
+			private final boolean[] done = new boolean[states.length];
+
+			protected void enter(long now) {
+				for (int i = 0; i < states.length; i++) {
+					entered[i] = now;
+					done[i] = false;
+					states[i].enter(now);
+				}
+			}
+
+			protected boolean isDone(long now, double elapsed) {
+				boolean all = true;
+				for (int i = 0; i < states.length; i++) {
+					if (done[i])
+						continue;
+					AutoState state = states[i];
+					double t = (now - entered[i]) / 1e9;
+					if (state.isDone(now, t)) {
+						state.exit(false);
+						done[i] = true;
+					} else if (t > state.budget) {
+						state.exit(true);
+						done[i] = true;
+					} else {
+						all = false;
+					}
+				}
+				return all;
+			}
+
+			protected void exit(boolean timedOut) {
+				for (int i = 0; i < states.length; i++) {
+					if (!done[i]) {
+						states[i].exit(timedOut);
+						done[i] = true;
+					}
+				}
+			}
+		};
+	}
+
+}
@@ -0,0 +1,31 @@
+package org.usfirst.frc.team2508.robot;
+
+import com.ni.vision.NIVision;
+import com.ni.vision.NIVision.GetImageSizeResult;
+import com.ni.vision.VisionException;
+
+/**
+ * FrameSource reading from an open IMAQdx camera session into NIVisionFrames.
+ */
+public class CameraSource implements FrameSource {
+
+	final int session;
+
+	public CameraSource(int session) {
+		this.session = session;
+	}
+
+	public boolean grab(Frame frame) {
+		try {
+			NIVisionFrame f = (NIVisionFrame) frame;
+			NIVision.IMAQdxGrab(session, f.image, 1);
+			GetImageSizeResult size = NIVision.imaqGetImageSize(f.image);
+			f.width = size.width;
+			f.height = size.height;
+			return true;
+		} catch (VisionException vi) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Inclusive RGB range a pixel must fall in to be part of a target.
+ */
+public class ColorThreshold {
+
+	// Retro-reflective tape under the ring light
+	static final ColorThreshold TAPE = new ColorThreshold(120, 250, 170, 255, 235, 255);
+
+	final int redMin, redMax;
+	final int greenMin, greenMax;
+	final int blueMin, blueMax;
+
+	public ColorThreshold(int redMin, int redMax, int greenMin, int greenMax, int blueMin, int blueMax) {
+		this.redMin = redMin;
+		this.redMax = redMax;
+		this.greenMin = greenMin;
+		this.greenMax = greenMax;
+		this.blueMin = blueMin;
+		this.blueMax = blueMax;
+	}
+
+	/** @param rgb pixel packed 0xRRGGBB */
+	public boolean matches(int rgb) {
+		int r = (rgb >> 16) & 0xFF;
+		int g = (rgb >> 8) & 0xFF;
+		int b = rgb & 0xFF;
+		return r >= redMin && r <= redMax && g >= greenMin && g <= greenMax && b >= blueMin && b <= blueMax;
+	}
+
+	@Override
+	public String toString() {
+		return "ColorThreshold{red=" + redMin + "-" + redMax + ",green=" + greenMin + "-" + greenMax
+				+ ",blue=" + blueMin + "-" + blueMax + "}";
+	}
+
+}
@@ -0,0 +1,172 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.Arrays;
+
+/**
+ * Single pass connected-component labelling of a byte mask (4-connected,
+ * any non-zero byte is set). Labels are only kept for the previous and
+ * current row; bounding rects and areas are gathered per provisional label
+ * and folded into their roots with union-find at the end.
+ * <p>
+ * Particles come out in raster order of their first pixel. All scratch space
+ * is reused, so labelling allocates nothing once it has seen its busiest
+ * frame.
+ */
+public class ComponentLabeller {
+
+	private int[] previous = new int[0];
+	private int[] current = new int[0];
+	int[] firstRow = new int[0];
+	int[] lastRow = previous;
+
+	// Per provisional label
+	int[] parent = new int[64];
+	int[] minX = new int[64];
+	int[] minY = new int[64];
+	int[] maxX = new int[64];
+	int[] maxY = new int[64];
+	int[] area = new int[64];
+	int labels;
+
+	/** Labels the whole of a width x height mask. */
+	public int label(byte[] mask, int width, int height, TargetBuffer out) {
+		return label(mask, width, 0, 0, width, height, out);
+	}
+
+	/**
+	 * Labels the given rectangle of a mask whose rows are stride bytes long.
+	 * Rects written to out are in full-mask coordinates.
+	 * 
+	 * @return the number of particles
+	 */
+	public int label(byte[] mask, int stride, int left, int top, int width, int height, TargetBuffer out) {
+		scan(mask, stride, left, top, width, height);
+		return collect(out);
+	}
+
+	/**
+	 * First half of {@link #label}: assigns provisional labels and gathers
+	 * their stats without folding them together. Afterwards firstRow and
+	 * lastRow hold the labels of the rectangle's top and bottom rows (-1 for
+	 * background), which ParallelVisionBackend uses to stitch tiles.
+	 */
+	void scan(byte[] mask, int stride, int left, int top, int width, int height) {
+		if (previous.length < width) {
+			previous = new int[width];
+			current = new int[width];
+			firstRow = new int[width];
+		}
+		Arrays.fill(previous, 0, width, -1);
+		Arrays.fill(firstRow, 0, width, -1);
+		labels = 0;
+
+		for (int y = top; y < top + height; y++) {
+			int row = y * stride + left;
+			for (int i = 0; i < width; i++) {
+				if (mask[row + i] == 0) {
+					current[i] = -1;
+					continue;
+				}
+				int west = i > 0 ? current[i - 1] : -1;
+				int north = previous[i];
+				int label;
+				if (west < 0 && north < 0) {
+					label = newLabel();
+				} else if (west < 0) {
+					label = north;
+				} else {
+					label = west;
+					if (north >= 0 && north != west)
+						union(north, west);
+				}
+				current[i] = label;
+				add(label, left + i, y);
+			}
+			if (y == top)
+				System.arraycopy(current, 0, firstRow, 0, width);
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		lastRow = previous;
+	}
+
+	// -------------------------------------------------------------
+	// Union-find over provisional labels
+	// -------------------------------------------------------------
+	int newLabel() {
+		if (labels == parent.length) {
+			int capacity = labels * 2;
+			parent = Arrays.copyOf(parent, capacity);
+			minX = Arrays.copyOf(minX, capacity);
+			minY = Arrays.copyOf(minY, capacity);
+			maxX = Arrays.copyOf(maxX, capacity);
+			maxY = Arrays.copyOf(maxY, capacity);
+			area = Arrays.copyOf(area, capacity);
+		}
+		int label = labels++;
+		parent[label] = label;
+		minX[label] = Integer.MAX_VALUE;
+		minY[label] = Integer.MAX_VALUE;
+		maxX[label] = Integer.MIN_VALUE;
+		maxY[label] = Integer.MIN_VALUE;
+		area[label] = 0;
+		return label;
+	}
+
+	int find(int label) {
+		while (parent[label] != label) {
+			parent[label] = parent[parent[label]]; // path halving
+			label = parent[label];
+		}
+		return label;
+	}
+
+	/** Joins two sets, keeping the older (lower) label as the root. */
+	void union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a < b)
+			parent[b] = a;
+		else if (b < a)
+			parent[a] = b;
+	}
+
+	void add(int label, int x, int y) {
+		if (x < minX[label])
+			minX[label] = x;
+		if (x > maxX[label])
+			maxX[label] = x;
+		if (y < minY[label])
+			minY[label] = y;
+		if (y > maxY[label])
+			maxY[label] = y;
+		area[label]++;
+	}
+
+	void clear() {
+		labels = 0;
+	}
+
+	/** Folds every label's stats into its root and writes out the roots. */
+	int collect(TargetBuffer out) {
+		for (int l = 0; l < labels; l++) {
+			int root = find(l);
+			if (root == l)
+				continue;
+			minX[root] = Math.min(minX[root], minX[l]);
+			minY[root] = Math.min(minY[root], minY[l]);
+			maxX[root] = Math.max(maxX[root], maxX[l]);
+			maxY[root] = Math.max(maxY[root], maxY[l]);
+			area[root] += area[l];
+		}
+
+		out.clear();
+		for (int l = 0; l < labels; l++) {
+			if (parent[l] == l)
+				out.add(minX[l], minY[l], maxX[l] - minX[l] + 1, maxY[l] - minY[l] + 1, area[l]);
+		}
+		return out.size;
+	}
+
+}
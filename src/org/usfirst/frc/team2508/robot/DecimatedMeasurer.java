@@ -0,0 +1,118 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Two step particle measurement. Candidates are found on a copy of the
+ * region decimated by factor; only the candidates big enough to become
+ * targets are then thresholded and measured again at full resolution, in
+ * their own (slightly grown) rectangles. The targets that come out are in
+ * full resolution frame coordinates, the same as a plain full scan.
+ * <p>
+ * A factor of 1 is a plain full resolution scan. The factor should stay
+ * below the height of the thinnest target, or it may fall between the rows
+ * that are sampled.
+ */
+public class DecimatedMeasurer {
+
+	static final int MAX_BOXES = 64;
+
+	private int factor = 1;
+	private double minWidth = VisionPipeline.MIN_WIDTH;
+
+	private final TargetBuffer candidates = new TargetBuffer();
+	private final TargetBuffer refined = new TargetBuffer();
+	private final Region box = new Region();
+
+	// Rectangles to refine, as left/top/right/bottom (exclusive)
+	private final int[] left = new int[MAX_BOXES];
+	private final int[] top = new int[MAX_BOXES];
+	private final int[] right = new int[MAX_BOXES];
+	private final int[] bottom = new int[MAX_BOXES];
+	private int boxes;
+
+	// Statistics
+	long candidatesFound;
+	long pixelsRefined;
+
+	public int getFactor() {
+		return factor;
+	}
+
+	public void setFactor(int factor) {
+		this.factor = Math.max(1, factor);
+	}
+
+	/** Narrowest full resolution target worth refining. */
+	public void setMinWidth(double minWidth) {
+		this.minWidth = minWidth;
+	}
+
+	/**
+	 * Thresholds and measures region of frame into out.
+	 * 
+	 * @return the number of particles
+	 */
+	public int measure(VisionBackend backend, Frame frame, ColorThreshold range, Region region, TargetBuffer out) {
+		if (factor == 1) {
+			backend.threshold(frame, range, region);
+			return backend.measure(frame, region, out);
+		}
+
+		backend.measureDecimated(frame, range, region, factor, candidates);
+		candidatesFound += candidates.size;
+		findBoxes(region);
+
+		out.clear();
+		for (int b = 0; b < boxes; b++) {
+			box.set(left[b], top[b], right[b] - left[b], bottom[b] - top[b]);
+			backend.threshold(frame, range, box);
+			backend.measure(frame, box, refined);
+			pixelsRefined += box.area();
+			for (int i = 0; i < refined.size; i++)
+				out.add(refined.x[i], refined.y[i], refined.width[i], refined.height[i], refined.area[i]);
+		}
+		return out.size;
+	}
+
+	/**
+	 * Grows each wide enough candidate by factor on every side (a coarse rect
+	 * is off by less than factor) and merges boxes that overlap, so no pixel
+	 * is measured twice.
+	 */
+	private void findBoxes(Region region) {
+		boxes = 0;
+		for (int i = 0; i < candidates.size && boxes < MAX_BOXES; i++) {
+			if (candidates.width[i] + 2 * factor <= minWidth)
+				continue;
+			left[boxes] = Math.max(region.left, (int) candidates.x[i] - factor);
+			top[boxes] = Math.max(region.top, (int) candidates.y[i] - factor);
+			right[boxes] = Math.min(region.left + region.width,
+					(int) (candidates.x[i] + candidates.width[i]) + factor);
+			bottom[boxes] = Math.min(region.top + region.height,
+					(int) (candidates.y[i] + candidates.height[i]) + factor);
+			boxes++;
+		}
+
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			for (int a = 0; a < boxes; a++) {
+				for (int b = a + 1; b < boxes; b++) {
+					if (left[a] < right[b] && left[b] < right[a] && top[a] < bottom[b] && top[b] < bottom[a]) {
+						left[a] = Math.min(left[a], left[b]);
+						top[a] = Math.min(top[a], top[b]);
+						right[a] = Math.max(right[a], right[b]);
+						bottom[a] = Math.max(bottom[a], bottom[b]);
+						boxes--;
+						left[b] = left[boxes];
+						top[b] = top[boxes];
+						right[b] = right[boxes];
+						bottom[b] = bottom[boxes];
+						merged = true;
+						b--;
+					}
+				}
+			}
+		}
+	}
+
+}
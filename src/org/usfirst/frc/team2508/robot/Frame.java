@@ -0,0 +1,22 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One camera frame travelling through the vision pipeline. What the pixels
+ * are stored in depends on the VisionBackend that created the frame; this
+ * class only carries what every backend shares. Frames are owned by a
+ * {@link FramePool} and reused for the life of the robot.
+ */
+public abstract class Frame {
+
+	long timestamp; // System.nanoTime() at capture
+	int width; // size of the captured image
+	int height;
+	final Overlay overlay = new Overlay(); // drawn only if streamed
+
+	// Maintained by FramePool
+	final AtomicBoolean inUse = new AtomicBoolean();
+	long borrowedAt;
+
+}
@@ -0,0 +1,114 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed set of frame buffers shared by the vision threads. Every frame (for
+ * NIVision, its RGB and U8 images) is created up front by the backend, so the steady-state pipeline allocates
+ * nothing; stages borrow a frame, pass it along, and the last stage returns
+ * it.
+ * <p>
+ * The counters make leaks visible: a frame that is borrowed but never
+ * returned shows up in {@link #getOutstanding()} and, once it has been out
+ * longer than expected, in {@link #countOverdue(double)}.
+ */
+public class FramePool {
+
+	private final VisionBackend backend;
+	private final Frame[] frames;
+	private final BlockingQueue<Frame> available;
+
+	// Statistics
+	final AtomicLong borrows = new AtomicLong();
+	final AtomicLong returns = new AtomicLong();
+	final AtomicLong waits = new AtomicLong(); // borrow found the pool empty
+	final AtomicLong badReturns = new AtomicLong(); // foreign or double release
+
+	public FramePool(VisionBackend backend, int capacity) {
+		this.backend = backend;
+		frames = new Frame[capacity];
+		available = new ArrayBlockingQueue<Frame>(capacity);
+		for (int i = 0; i < capacity; i++) {
+			frames[i] = backend.createFrame();
+			available.add(frames[i]);
+		}
+	}
+
+	public int getCapacity() {
+		return frames.length;
+	}
+
+	public int getAvailable() {
+		return available.size();
+	}
+
+	/** Frames currently borrowed and not yet released. */
+	public int getOutstanding() {
+		return (int) (borrows.get() - returns.get());
+	}
+
+	/**
+	 * Waits up to timeout seconds for a free frame.
+	 * 
+	 * @return the frame, or null if none became free in time
+	 */
+	public Frame borrow(double timeout) throws InterruptedException {
+		Frame frame = available.poll();
+		if (frame == null) {
+			waits.incrementAndGet();
+			frame = available.poll((long) (timeout * 1e9), TimeUnit.NANOSECONDS);
+			if (frame == null)
+				return null;
+		}
+		frame.inUse.set(true);
+		frame.borrowedAt = System.nanoTime();
+		borrows.incrementAndGet();
+		return frame;
+	}
+
+	public void release(Frame frame) {
+		if (frame == null || !owns(frame) || !frame.inUse.compareAndSet(true, false)) {
+			badReturns.incrementAndGet();
+			return;
+		}
+		returns.incrementAndGet();
+		available.offer(frame);
+	}
+
+	/** Number of frames that have been borrowed for longer than maxAge seconds. */
+	public int countOverdue(double maxAge) {
+		long now = System.nanoTime();
+		int overdue = 0;
+		for (Frame frame : frames) {
+			if (frame.inUse.get() && (now - frame.borrowedAt) / 1e9 > maxAge)
+				overdue++;
+		}
+		return overdue;
+	}
+
+	/** Frees the frames' buffers. Only call once nothing is using the pool. */
+	public void dispose() {
+		available.clear();
+		for (Frame frame : frames)
+			backend.disposeFrame(frame);
+	}
+
+	private boolean owns(Frame frame) {
+		for (Frame f : frames) {
+			if (f == frame)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "FramePool{capacity=" + frames.length + ",available=" + available.size()
+				+ ",borrows=" + borrows + ",returns=" + returns + ",waits=" + waits
+				+ ",badReturns=" + badReturns + "}";
+	}
+
+}
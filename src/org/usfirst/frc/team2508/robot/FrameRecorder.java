@@ -0,0 +1,126 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Records camera frames into a preallocated, memory-mapped ring file that
+ * ReplaySource can play back later. Recording a frame is a copy into mapped
+ * memory, with no file I/O call on the grab path; the OS writes the pages
+ * out in the background. Once the ring is full the oldest frames are
+ * overwritten.
+ * <p>
+ * File layout (little-endian):
+ * 
+ * <pre>
+ * header, HEADER bytes:
+ *   long magic, int version, int slots, int slotSize, int maxWidth,
+ *   int maxHeight, (pad), long frames written (at WRITTEN_AT)
+ * slot, slotSize bytes, repeated slots times:
+ *   long sequence (-1 while being written), long capture time in ns,
+ *   int width, int height, (pad to SLOT_HEADER),
+ *   width * height ints of pixels packed 0x??RRGGBB
+ * </pre>
+ */
+public class FrameRecorder {
+
+	static final long MAGIC = 0x5638303532435246L; // "FRC2508V" little-endian
+	static final int VERSION = 1;
+
+	static final int HEADER = 64;
+	static final int VERSION_AT = 8;
+	static final int SLOTS_AT = 12;
+	static final int SLOT_SIZE_AT = 16;
+	static final int MAX_WIDTH_AT = 20;
+	static final int MAX_HEIGHT_AT = 24;
+	static final int WRITTEN_AT = 32;
+
+	static final int SLOT_HEADER = 32;
+	static final int SEQUENCE_AT = 0;
+	static final int TIMESTAMP_AT = 8;
+	static final int WIDTH_AT = 16;
+	static final int HEIGHT_AT = 20;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer map;
+	private final int slots;
+	private final int slotSize;
+	private final int maxPixels;
+
+	// Statistics
+	volatile long written;
+	volatile long skipped; // too big or unreadable
+
+	public FrameRecorder(File path, int slots, int maxWidth, int maxHeight) throws IOException {
+		this.slots = slots;
+		this.slotSize = SLOT_HEADER + maxWidth * maxHeight * 4;
+		this.maxPixels = maxWidth * maxHeight;
+
+		long length = HEADER + (long) slots * slotSize;
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("ring file too large: " + length + " bytes");
+
+		file = new RandomAccessFile(path, "rw");
+		file.setLength(length);
+		map = file.getChannel().map(MapMode.READ_WRITE, 0, length);
+		map.order(ByteOrder.LITTLE_ENDIAN);
+
+		map.putLong(0, MAGIC);
+		map.putInt(VERSION_AT, VERSION);
+		map.putInt(SLOTS_AT, slots);
+		map.putInt(SLOT_SIZE_AT, slotSize);
+		map.putInt(MAX_WIDTH_AT, maxWidth);
+		map.putInt(MAX_HEIGHT_AT, maxHeight);
+		map.putLong(WRITTEN_AT, 0);
+		for (int i = 0; i < slots; i++)
+			map.putLong(HEADER + i * slotSize + SEQUENCE_AT, -1);
+
+		// Fault the pages in now rather than on the first lap of the ring
+		map.load();
+	}
+
+	/**
+	 * Copies a freshly grabbed frame into the next slot. Only call from one
+	 * thread (the capture stage).
+	 */
+	public void record(VisionBackend backend, Frame frame) {
+		if (frame.width * frame.height > maxPixels) {
+			skipped++;
+			return;
+		}
+
+		long sequence = written;
+		int base = HEADER + (int) (sequence % slots) * slotSize;
+		map.putLong(base + SEQUENCE_AT, -1);
+		map.putLong(base + TIMESTAMP_AT, frame.timestamp);
+		map.putInt(base + WIDTH_AT, frame.width);
+		map.putInt(base + HEIGHT_AT, frame.height);
+
+		map.position(base + SLOT_HEADER);
+		if (!backend.readPixels(frame, map)) {
+			skipped++;
+			return;
+		}
+
+		map.putLong(base + SEQUENCE_AT, sequence);
+		written = sequence + 1;
+		map.putLong(WRITTEN_AT, written);
+	}
+
+	/** Flushes the ring to disk and closes it. Not for the hot path. */
+	public void close() throws IOException {
+		map.force();
+		file.close();
+	}
+
+	@Override
+	public String toString() {
+		return "FrameRecorder{slots=" + slots + ",written=" + written + ",skipped=" + skipped + "}";
+	}
+
+}
@@ -0,0 +1,15 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Where the vision pipeline's capture stage gets its pixels from.
+ */
+public interface FrameSource {
+
+	/**
+	 * Fills the frame with the next image, blocking until one is ready.
+	 * 
+	 * @return false if no image could be read this time
+	 */
+	boolean grab(Frame frame);
+
+}
@@ -0,0 +1,96 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.ni.vision.NIVision.Image;
+
+/**
+ * Pure Java VisionBackend working on PixelFrames. It gives the same targets
+ * as NIVisionBackend for the same pixels, and runs anywhere, so the pipeline
+ * can be tested and profiled off the robot. It cannot stream to the
+ * CameraServer.
+ */
+public class JavaVisionBackend implements VisionBackend {
+
+	final int width;
+	final int height;
+	private final ComponentLabeller labeller = new ComponentLabeller();
+	private final ComponentLabeller coarse = new ComponentLabeller();
+	private byte[] small = new byte[0];
+
+	public JavaVisionBackend(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	public Frame createFrame() {
+		return new PixelFrame(width, height);
+	}
+
+	public void disposeFrame(Frame frame) {
+	}
+
+	public void threshold(Frame frame, ColorThreshold range, Region region) {
+		PixelFrame f = (PixelFrame) frame;
+		threshold(f, range, region.left, region.top, region.width, region.height);
+	}
+
+	void threshold(PixelFrame frame, ColorThreshold range, int left, int top, int width, int height) {
+		int[] pixels = frame.pixels;
+		byte[] mask = frame.mask;
+		for (int y = top; y < top + height; y++) {
+			int end = y * frame.width + left + width;
+			for (int i = y * frame.width + left; i < end; i++)
+				mask[i] = range.matches(pixels[i]) ? (byte) 255 : 0;
+		}
+	}
+
+	public int measure(Frame frame, Region region, TargetBuffer out) {
+		PixelFrame f = (PixelFrame) frame;
+		return labeller.label(f.mask, f.width, region.left, region.top, region.width, region.height, out);
+	}
+
+	public int measureDecimated(Frame frame, ColorThreshold range, Region region, int factor, TargetBuffer out) {
+		PixelFrame f = (PixelFrame) frame;
+		int columns = Math.max(1, region.width / factor);
+		int rows = Math.max(1, region.height / factor);
+		if (small.length < columns * rows)
+			small = new byte[columns * rows];
+
+		int[] pixels = f.pixels;
+		for (int r = 0; r < rows; r++) {
+			int row = (region.top + r * factor) * f.width + region.left;
+			for (int c = 0; c < columns; c++)
+				small[r * columns + c] = range.matches(pixels[row + c * factor]) ? (byte) 255 : 0;
+		}
+
+		int particles = coarse.label(small, columns, 0, 0, columns, rows, out);
+		out.rescale(factor, region.left, region.top);
+		return particles;
+	}
+
+	public boolean readPixels(Frame frame, ByteBuffer out) {
+		PixelFrame f = (PixelFrame) frame;
+		int n = f.width * f.height;
+		out.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(f.pixels, 0, n);
+		out.position(out.position() + n * 4);
+		return true;
+	}
+
+	public boolean writePixels(Frame frame, ByteBuffer in, int width, int height) {
+		PixelFrame f = (PixelFrame) frame;
+		if (width * height > f.pixels.length)
+			return false;
+		f.width = width;
+		f.height = height;
+		in.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(f.pixels, 0, width * height);
+		in.position(in.position() + width * height * 4);
+		return true;
+	}
+
+	public Image getImage(Frame frame, boolean binary, int scale) {
+		return null;
+	}
+
+}
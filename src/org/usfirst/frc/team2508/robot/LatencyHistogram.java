@@ -0,0 +1,82 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-bucket histogram of nanosecond durations. Buckets are log-linear:
+ * each power of two from 1 us up is split into SUB_BUCKETS equal parts, so
+ * percentiles are accurate to about 1 / SUB_BUCKETS of their value.
+ * Recording is a few shifts and an array increment and never allocates.
+ * Not thread safe; record and read from one thread.
+ */
+public class LatencyHistogram {
+
+	static final int SUB_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BITS;
+	static final int MIN_SHIFT = 10; // first bucket width ~1 us
+	static final int OCTAVES = 24; // up to ~2^34 ns, about 17 s
+
+	private final long[] counts = new long[(OCTAVES + 1) * SUB_BUCKETS];
+	private long count;
+	private long max;
+
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts[bucket(nanos)]++;
+		count++;
+		if (nanos > max)
+			max = nanos;
+	}
+
+	static int bucket(long nanos) {
+		long units = nanos >>> MIN_SHIFT;
+		if (units < SUB_BUCKETS)
+			return (int) units;
+		int octave = 63 - Long.numberOfLeadingZeros(units) - SUB_BITS + 1;
+		if (octave > OCTAVES)
+			return (OCTAVES + 1) * SUB_BUCKETS - 1;
+		int sub = (int) (units >>> (octave - 1)) - SUB_BUCKETS;
+		return octave * SUB_BUCKETS + sub;
+	}
+
+	/** Largest value that falls in a bucket. */
+	static long upperBound(int bucket) {
+		int octave = bucket / SUB_BUCKETS;
+		int sub = bucket % SUB_BUCKETS;
+		long units = octave == 0 ? sub + 1 : (long) (SUB_BUCKETS + sub + 1) << (octave - 1);
+		return (units << MIN_SHIFT) - 1;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * The value below which the given fraction of recordings fall, to bucket
+	 * accuracy and never above the max; 0 if nothing was recorded.
+	 */
+	public long percentile(double fraction) {
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upperBound(i), max);
+		}
+		return max;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		max = 0;
+	}
+
+}
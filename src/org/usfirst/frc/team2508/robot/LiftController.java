@@ -0,0 +1,327 @@
+package org.usfirst.frc.team2508.robot;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Closed-loop lift control on its own fixed-rate thread. The only code that
+ * sets the lift motor; everyone else asks for a mode:
+ * <ul>
+ * <li>position: PID plus a constant gravity feed-forward to an encoder
+ * setpoint, usually a tote preset;</li>
+ * <li>manual: open-loop power from the operator;</li>
+ * <li>homing: down at homing power until liftHome closes, or stop after a
+ * timeout.</li>
+ * </ul>
+ * Whenever liftHome closes, in any mode, the encoder is zeroed on the next
+ * tick. The same happens if liftHome is already closed when the controller
+ * starts or homing begins, since no edge will come then. The LiftState is
+ * worked out from the measured position and speed.
+ * <p>
+ * Encoder counts are taken to increase going up. The gains are untuned
+ * starting points.
+ */
+public class LiftController {
+
+	static final int COUNTS_PER_TOTE = 1940;
+	static final int MAX_TOTES = 4;
+	static final int MAX_COUNTS = COUNTS_PER_TOTE * MAX_TOTES + 200;
+	static final int TOLERANCE = 40; // counts from setpoint counted as there
+	static final double MOVING = 150; // counts per second counted as moving
+
+	enum Mode {
+		OFF,
+		POSITION,
+		MANUAL,
+		HOMING,
+	}
+
+	// Gains
+	volatile double kP = 0.9 / 400; // full power 400 counts off
+	volatile double kI = 0.0005;
+	volatile double kD = 0.00005;
+	volatile double kF = 0.1; // holds the carriage against gravity
+	volatile double maxUp = 0.9;
+	volatile double maxDown = 0.6;
+	volatile double homingPower = 0.6;
+	volatile double homingTimeout = 4.0;
+
+	private final SpeedController motor;
+	private final Encoder encoder;
+	private final LoopScheduler loop;
+
+	// Commands, from any thread
+	private volatile Mode mode = Mode.OFF;
+	private volatile double setpoint;
+	private volatile double manual;
+	private volatile boolean rezero;
+	private volatile long homingStarted;
+	private volatile LimitSwitchService limits;
+	private volatile DigitalInput home;
+
+	// Controller thread state
+	private double integral;
+	private double lastPosition;
+	private volatile boolean running;
+
+	// Published by the controller thread
+	private volatile int position;
+	private volatile double velocity; // counts per second, smoothed
+	private volatile double output;
+	private volatile boolean homed;
+	private volatile boolean homeFailed;
+	private volatile LiftState state = LiftState.GROUND;
+
+	/** @param rate control updates per second */
+	public LiftController(SpeedController motor, Encoder encoder, double rate) {
+		this.motor = motor;
+		this.encoder = encoder;
+		this.loop = new LoopScheduler(rate);
+	}
+
+	/** Zeroes the encoder whenever home closes. */
+	public void useHomeSwitch(LimitSwitchService limits, final DigitalInput home) {
+		this.home = home;
+		this.limits = limits; // last, isHomePressed() checks it
+		limits.addListener(home, new LimitSwitchService.Listener() {
+			public void changed(DigitalInput input, boolean pressed) {
+				if (pressed)
+					rezero = true;
+			}
+		});
+	}
+
+	public void start() {
+		if (running)
+			return;
+		running = true;
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				control();
+			}
+		}, "LiftController");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	public void stop() {
+		running = false;
+	}
+
+	// -------------------------------------------------------------
+	// Commands
+	// -------------------------------------------------------------
+	/** Holds the lift at an encoder count. */
+	public void setPosition(double counts) {
+		setpoint = Math.max(0, Math.min(MAX_COUNTS, counts));
+		mode = Mode.POSITION;
+		notifyState();
+	}
+
+	/** Holds the lift with its bottom at a number of totes up. */
+	public void setPreset(int totes) {
+		setPosition(Math.max(0, Math.min(MAX_TOTES, totes)) * COUNTS_PER_TOTE);
+	}
+
+	/** Preset nearest the current setpoint, or position when not holding one. */
+	public int getPreset() {
+		double at = mode == Mode.POSITION ? setpoint : position;
+		return (int) Math.round(at / COUNTS_PER_TOTE);
+	}
+
+	/** Holds wherever the lift is now. */
+	public void hold() {
+		setPosition(position);
+	}
+
+	/** Open-loop power, positive up. */
+	public void setManual(double power) {
+		manual = power;
+		mode = Mode.MANUAL;
+	}
+
+	/** Drives down until liftHome closes, then holds at zero. */
+	public void home() {
+		homeFailed = false;
+		homingStarted = System.nanoTime();
+		mode = Mode.HOMING;
+	}
+
+	/** Stops the motor and forgets the integral, e.g. when disabled. */
+	public void disable() {
+		mode = Mode.OFF;
+	}
+
+	// -------------------------------------------------------------
+	// State
+	// -------------------------------------------------------------
+	public int getPosition() {
+		return position;
+	}
+
+	public double getVelocity() {
+		return velocity;
+	}
+
+	public double getOutput() {
+		return output;
+	}
+
+	public double getSetpoint() {
+		return setpoint;
+	}
+
+	public LiftState getState() {
+		return state;
+	}
+
+	/** True once liftHome has zeroed the encoder. */
+	public boolean isHomed() {
+		return homed;
+	}
+
+	public boolean hasHomeFailed() {
+		return homeFailed;
+	}
+
+	public boolean isAtSetpoint() {
+		return mode == Mode.POSITION && Math.abs(setpoint - position) <= TOLERANCE && Math.abs(velocity) < MOVING;
+	}
+
+	/**
+	 * Waits until the lift is settled at its setpoint, or a homing run has
+	 * ended.
+	 * 
+	 * @return false on timeout
+	 */
+	public synchronized boolean awaitSettled(double timeout) throws InterruptedException {
+		long end = System.nanoTime() + (long) (timeout * 1e9);
+		while (!(isAtSetpoint() || mode == Mode.OFF)) {
+			long remaining = end - System.nanoTime();
+			if (remaining <= 0)
+				return false;
+			wait(remaining / 1000000, (int) (remaining % 1000000));
+		}
+		return true;
+	}
+
+	private boolean isHomePressed() {
+		LimitSwitchService limits = this.limits;
+		return limits != null && limits.isPressed(home);
+	}
+
+	private synchronized void notifyState() {
+		notifyAll();
+	}
+
+	// -------------------------------------------------------------
+	// Control loop
+	// -------------------------------------------------------------
+	private void control() {
+		double dt = loop.getPeriod();
+		loop.start();
+		lastPosition = encoder.get();
+		boolean settled = false;
+		if (isHomePressed())
+			rezero = true; // started at the bottom
+
+		while (running) {
+			// Homing while already down: no edge is coming, so zero now rather
+			// than drive into the stop for a tick
+			boolean homing = mode == Mode.HOMING;
+			if (rezero || (homing && isHomePressed())) {
+				rezero = false;
+				encoder.reset();
+				lastPosition = 0;
+				homed = true;
+				if (homing)
+					setPosition(0);
+			}
+
+			int counts = encoder.get();
+			double speed = (counts - lastPosition) / dt;
+			lastPosition = counts;
+			position = counts;
+			velocity += 0.3 * (speed - velocity);
+
+			double out = 0;
+			switch (mode) {
+			case OFF:
+				integral = 0;
+				break;
+			case MANUAL:
+				integral = 0;
+				out = manual;
+				break;
+			case HOMING:
+				integral = 0;
+				if ((System.nanoTime() - homingStarted) / 1e9 > homingTimeout) {
+					homeFailed = true;
+					mode = Mode.OFF;
+					notifyState();
+				} else {
+					out = -homingPower;
+				}
+				break;
+			case POSITION:
+				out = pid(setpoint, counts, speed, dt);
+				break;
+			}
+
+			// Soft limit at the top once zeroed
+			if (homed && counts >= MAX_COUNTS && out > 0)
+				out = 0;
+			out = Math.max(-maxDown, Math.min(maxUp, out));
+			output = out;
+			motor.set(out);
+
+			updateState(counts);
+			boolean now = isAtSetpoint();
+			if (now && !settled)
+				notifyState();
+			settled = now;
+
+			loop.waitForNextCycle();
+		}
+		motor.set(0);
+	}
+
+	private double pid(double target, int counts, double speed, double dt) {
+		double error = target - counts;
+
+		// Resting on the bottom: let the stop carry it
+		if (target <= TOLERANCE && counts <= TOLERANCE) {
+			integral = 0;
+			return 0;
+		}
+
+		integral += error * dt;
+		double limit = maxUp / Math.max(kI, 1e-9);
+		integral = Math.max(-limit, Math.min(limit, integral));
+
+		// Derivative on measurement, so a new setpoint doesn't kick
+		return kF + kP * error + kI * integral - kD * speed;
+	}
+
+	private void updateState(int counts) {
+		if (mode == Mode.HOMING)
+			state = LiftState.DESCENDING;
+		else if (velocity > MOVING)
+			state = LiftState.LIFTING;
+		else if (velocity < -MOVING)
+			state = LiftState.DESCENDING;
+		else if (counts <= TOLERANCE)
+			state = LiftState.GROUND;
+		else
+			state = LiftState.WAITING;
+	}
+
+	@Override
+	public String toString() {
+		return "LiftController{mode=" + mode + ",state=" + state + ",position=" + position + ",setpoint="
+				+ setpoint + ",output=" + output + ",homed=" + homed + "}";
+	}
+
+}
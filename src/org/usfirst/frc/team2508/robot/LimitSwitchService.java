@@ -0,0 +1,147 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+
+/**
+ * Watches limit switches with FPGA edge interrupts instead of polling. Each
+ * registered switch gets a thread that blocks in waitForInterrupt on both
+ * edges, so nothing runs until the switch changes (or once a second, to
+ * recheck). Code can wait for a switch to close with a timeout, or register
+ * a listener called on every change.
+ * <p>
+ * WPILib 2015's asynchronous InterruptHandlerFunction cannot be implemented
+ * outside its package, hence the synchronous interrupt on a thread of our
+ * own.
+ */
+public class LimitSwitchService {
+
+	static final double RECHECK = 1.0; // seconds between waits with no edge
+
+	/** Called on the switch's thread; keep it short. */
+	public interface Listener {
+		void changed(DigitalInput input, boolean pressed);
+	}
+
+	private static class Switch {
+		final DigitalInput input;
+		final boolean activeLow;
+		final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+		volatile boolean pressed;
+		volatile long edges;
+
+		Switch(DigitalInput input, boolean activeLow) {
+			this.input = input;
+			this.activeLow = activeLow;
+		}
+
+		boolean read() {
+			return input.get() != activeLow;
+		}
+	}
+
+	private final List<Switch> switches = new ArrayList<Switch>();
+	private volatile boolean running = true;
+
+	/**
+	 * Starts watching a switch.
+	 * 
+	 * @param activeLow true if get() reads false while the switch is pressed
+	 */
+	public synchronized void register(DigitalInput input, boolean activeLow) {
+		if (find(input) != null)
+			return;
+		final Switch s = new Switch(input, activeLow);
+		s.pressed = s.read();
+		switches.add(s);
+
+		// Synchronous: waitForInterrupt needs no enableInterrupts(), which
+		// throws for this kind
+		input.requestInterrupts();
+		input.setUpSourceEdge(true, true);
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				watch(s);
+			}
+		}, "LimitSwitch-" + input.getChannel());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void addListener(DigitalInput input, Listener listener) {
+		get(input).listeners.add(listener);
+	}
+
+	/** Last known state, without touching the hardware. */
+	public boolean isPressed(DigitalInput input) {
+		return get(input).pressed;
+	}
+
+	public long getEdges(DigitalInput input) {
+		return get(input).edges;
+	}
+
+	/**
+	 * Blocks until the switch is pressed.
+	 * 
+	 * @return false if it was not pressed within timeout seconds
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public boolean awaitPressed(DigitalInput input, double timeout) throws InterruptedException {
+		Switch s = get(input);
+		long end = System.nanoTime() + (long) (timeout * 1e9);
+		synchronized (s) {
+			while (!s.pressed) {
+				long remaining = end - System.nanoTime();
+				if (remaining <= 0)
+					return false;
+				s.wait(remaining / 1000000, (int) (remaining % 1000000));
+			}
+		}
+		return true;
+	}
+
+	/** Stops every watcher thread within RECHECK seconds. */
+	public void stop() {
+		running = false;
+	}
+
+	private void watch(Switch s) {
+		while (running) {
+			// Returns at once for an edge since the last wait, so none is missed
+			s.input.waitForInterrupt(RECHECK, false);
+			boolean pressed = s.read();
+			if (pressed == s.pressed)
+				continue;
+
+			synchronized (s) {
+				s.pressed = pressed;
+				s.edges++;
+				s.notifyAll();
+			}
+			for (Listener listener : s.listeners)
+				listener.changed(s.input, pressed);
+		}
+		s.input.cancelInterrupts();
+	}
+
+	private synchronized Switch find(DigitalInput input) {
+		for (Switch s : switches) {
+			if (s.input == input)
+				return s;
+		}
+		return null;
+	}
+
+	private Switch get(DigitalInput input) {
+		Switch s = find(input);
+		if (s == null)
+			throw new IllegalArgumentException("limit switch on channel " + input.getChannel() + " not registered");
+		return s;
+	}
+
+}
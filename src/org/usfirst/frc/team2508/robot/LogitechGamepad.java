@@ -150,6 +150,23 @@ public class LogitechGamepad extends edu.wpi.first.wpilibj.GenericHID {
     }
     
 
+  /**
+   * Get the buttons as they were at the last call to #updatePrevButtonStates(), as a bitmask
+   * where bit n is set if button n was pressed.  Costs no calls to the driver station.
+   * 
+   * @return button bitmask.
+   */
+  public int getPrevButtonStates() {
+    int mask = 0;
+    for (int i = BUTTON_NUM_LOWEST; i <= BUTTON_NUM_HIGHEST; i++) {
+      if (m_priorButtonStates[i])
+        mask |= 1 << i;
+    }
+    return mask;
+  }
+
+
+
   /**
    * Get the value of a button that is pressed, by specifying the button number 1-12.
    * Note for ease, this class declares constants for each button number, their names being
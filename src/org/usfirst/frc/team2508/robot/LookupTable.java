@@ -0,0 +1,69 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Piecewise linear function of one variable, resampled onto a dense evenly
+ * spaced table so a lookup is one multiply and one interpolation no matter
+ * how many calibration samples it was built from. Immutable.
+ */
+public class LookupTable {
+
+	static final int SIZE = 1024;
+
+	final double min;
+	final double max;
+	private final double scale;
+	private final double[] values = new double[SIZE];
+
+	/**
+	 * @param xs sample inputs, strictly increasing, at least two
+	 * @param ys output at each input
+	 */
+	public LookupTable(double[] xs, double[] ys) {
+		if (xs.length < 2 || xs.length != ys.length)
+			throw new IllegalArgumentException("need at least two samples");
+		for (int i = 1; i < xs.length; i++) {
+			if (!(xs[i] > xs[i - 1]))
+				throw new IllegalArgumentException("sample inputs must increase: " + xs[i - 1] + ", " + xs[i]);
+		}
+
+		min = xs[0];
+		max = xs[xs.length - 1];
+		scale = (SIZE - 1) / (max - min);
+
+		int segment = 0;
+		for (int i = 0; i < SIZE; i++) {
+			double x = i == SIZE - 1 ? max : min + i / scale;
+			while (segment < xs.length - 2 && x > xs[segment + 1])
+				segment++;
+			double t = (x - xs[segment]) / (xs[segment + 1] - xs[segment]);
+			values[i] = ys[segment] + t * (ys[segment + 1] - ys[segment]);
+		}
+	}
+
+	/** True if x is inside the calibrated range. */
+	public boolean contains(double x) {
+		return x >= min && x <= max;
+	}
+
+	/** The value at x, clamped to the ends of the calibrated range; NaN for NaN. */
+	public double get(double x) {
+		if (x != x)
+			return Double.NaN;
+		if (x <= min)
+			return values[0];
+		if (x >= max)
+			return values[SIZE - 1];
+
+		double f = (x - min) * scale;
+		int i = (int) f;
+		if (i >= SIZE - 1)
+			return values[SIZE - 1];
+		return values[i] + (f - i) * (values[i + 1] - values[i]);
+	}
+
+	@Override
+	public String toString() {
+		return "LookupTable{min=" + min + ",max=" + max + "}";
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Times the sections of a loop into one LatencyHistogram each. Call
+ * {@link #begin()} at the top of the loop and {@link #lap(int, long)} at
+ * the end of each section; that is one nanoTime call per section.
+ * {@link #publish(long)} sets p50/p99/max for every section in Telemetry
+ * once per interval and starts a new window, so the loop itself never
+ * waits on NetworkTables.
+ */
+public class LoopProfiler {
+
+	private final Telemetry telemetry;
+	private final int[] slots; // p50, p99 and max per section
+	private final LatencyHistogram[] histograms;
+	private final long interval;
+	private long lastPublish;
+
+	/**
+	 * @param interval seconds between dashboard updates
+	 * @param names one per section, in the order of their indices
+	 */
+	public LoopProfiler(Telemetry telemetry, double interval, String... names) {
+		this.telemetry = telemetry;
+		this.interval = (long) (interval * 1e9);
+		slots = new int[names.length * 3];
+		histograms = new LatencyHistogram[names.length];
+		for (int i = 0; i < names.length; i++) {
+			slots[i * 3] = telemetry.number("Loop " + names[i] + " p50 us", 0);
+			slots[i * 3 + 1] = telemetry.number("Loop " + names[i] + " p99 us", 0);
+			slots[i * 3 + 2] = telemetry.number("Loop " + names[i] + " max us", 0);
+			histograms[i] = new LatencyHistogram();
+		}
+		lastPublish = System.nanoTime();
+	}
+
+	public long begin() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the time since start against a section.
+	 * 
+	 * @return now, the start of the next section
+	 */
+	public long lap(int section, long start) {
+		long now = System.nanoTime();
+		histograms[section].record(now - start);
+		return now;
+	}
+
+	public LatencyHistogram getHistogram(int section) {
+		return histograms[section];
+	}
+
+	/** Publishes and resets the histograms if the interval has passed. */
+	public void publish(long now) {
+		if (now - lastPublish < interval)
+			return;
+		lastPublish = now;
+
+		for (int i = 0; i < histograms.length; i++) {
+			LatencyHistogram h = histograms[i];
+			telemetry.set(slots[i * 3], h.percentile(0.5) / 1e3);
+			telemetry.set(slots[i * 3 + 1], h.percentile(0.99) / 1e3);
+			telemetry.set(slots[i * 3 + 2], h.getMax() / 1e3);
+			h.reset();
+		}
+	}
+
+}
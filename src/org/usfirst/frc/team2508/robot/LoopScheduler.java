@@ -0,0 +1,105 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a loop at a fixed rate against absolute deadlines, so the period does
+ * not stretch by however long the loop body took. Call {@link #start()}
+ * before the loop and {@link #waitForNextCycle()} at the end of each pass.
+ * <p>
+ * A pass that runs past its deadline is counted as an overrun; the missed
+ * cycles are skipped rather than run back to back, keeping the original
+ * phase. Jitter is how far each cycle's actual start was from its deadline.
+ */
+public class LoopScheduler {
+
+	private final long period; // nanoseconds
+	private long deadline;
+	private long cycleStart;
+
+	// Statistics, written by the loop thread only
+	volatile long cycles;
+	volatile long overruns;
+	volatile long skipped; // whole periods lost to overruns
+	volatile double busy; // fraction of the last period the body used
+	volatile double lastJitter; // seconds
+	volatile double maxJitter;
+	private double jitterSum;
+
+	/** @param rate cycles per second, e.g. 50 to 200 */
+	public LoopScheduler(double rate) {
+		period = (long) (1e9 / rate);
+	}
+
+	public double getPeriod() {
+		return period / 1e9;
+	}
+
+	/** System.nanoTime() at which the current cycle should end. */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Sets the first deadline one period from now and clears the statistics,
+	 * so they only cover this run of the loop.
+	 */
+	public void start() {
+		resetStatistics();
+		cycleStart = System.nanoTime();
+		deadline = cycleStart + period;
+	}
+
+	/**
+	 * Sleeps until the next deadline.
+	 * 
+	 * @return false if this pass overran its deadline and did not sleep
+	 */
+	public boolean waitForNextCycle() {
+		long now = System.nanoTime();
+		busy = (double) (now - cycleStart) / period;
+		cycles++;
+
+		boolean onTime = now < deadline;
+		if (onTime) {
+			long remaining;
+			while ((remaining = deadline - System.nanoTime()) > 0)
+				LockSupport.parkNanos(remaining);
+		} else {
+			overruns++;
+			long missed = (now - deadline) / period;
+			skipped += missed;
+			deadline += missed * period; // start right away, stay in phase
+		}
+
+		cycleStart = System.nanoTime();
+		double jitter = (cycleStart - deadline) / 1e9;
+		lastJitter = jitter;
+		maxJitter = Math.max(maxJitter, jitter);
+		jitterSum += jitter;
+		deadline += period;
+		return onTime;
+	}
+
+	/** Mean seconds between a deadline and the cycle actually starting. */
+	public double getMeanJitter() {
+		return cycles == 0 ? 0 : jitterSum / cycles;
+	}
+
+	public void resetStatistics() {
+		cycles = 0;
+		overruns = 0;
+		skipped = 0;
+		busy = 0;
+		lastJitter = 0;
+		maxJitter = 0;
+		jitterSum = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "LoopScheduler{rate=" + (1 / getPeriod()) + ",cycles=" + cycles + ",overruns=" + overruns
+				+ ",skipped=" + skipped + ",meanJitter=" + getMeanJitter() + ",maxJitter=" + maxJitter + "}";
+	}
+
+}
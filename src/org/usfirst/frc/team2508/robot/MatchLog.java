@@ -0,0 +1,222 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Binary log of every control loop iteration, written into a preallocated,
+ * memory-mapped ring file like FrameRecorder's: a record is a handful of
+ * puts into mapped memory and the OS writes the pages out in the
+ * background. Once the ring is full the oldest records are overwritten.
+ * MatchLogDecoder turns the file into CSV.
+ * <p>
+ * An existing log is never reused: each boot gets a new file from
+ * {@link #nextFile(File, int)}, so turning the robot back on in the pit
+ * does not wipe the match just played.
+ * <p>
+ * A record is filled field group by field group between {@link #begin(long)}
+ * and {@link #commit()}, all from one thread. File layout (little-endian):
+ * 
+ * <pre>
+ * header, HEADER bytes:
+ *   long magic, int version, int records, int recordSize, (pad),
+ *   long records written (at WRITTEN_AT)
+ * record, RECORD bytes, repeated records times:
+ *   long sequence (-1 while being written), long time in ns,
+ *   float left x, left y, right x, right y, int buttons (bit n = button n),
+ *   float drive x, drive y, rotation, float lift, left arm, right arm,
+ *   int encoder, byte flags, byte lift state, short targets, short pairs,
+ *   (pad), float angle, float range, float loop busy, (pad)
+ * </pre>
+ */
+public class MatchLog {
+
+	static final long MAGIC = 0x4C38303532435246L; // "FRC2508L" little-endian
+	static final int VERSION = 1;
+
+	static final int HEADER = 64;
+	static final int VERSION_AT = 8;
+	static final int RECORDS_AT = 12;
+	static final int RECORD_SIZE_AT = 16;
+	static final int WRITTEN_AT = 32;
+
+	static final int RECORD = 96;
+	static final int SEQUENCE_AT = 0;
+	static final int TIMESTAMP_AT = 8;
+	static final int LEFT_X_AT = 16;
+	static final int LEFT_Y_AT = 20;
+	static final int RIGHT_X_AT = 24;
+	static final int RIGHT_Y_AT = 28;
+	static final int BUTTONS_AT = 32;
+	static final int DRIVE_X_AT = 36;
+	static final int DRIVE_Y_AT = 40;
+	static final int ROTATION_AT = 44;
+	static final int LIFT_AT = 48;
+	static final int LEFT_ARM_AT = 52;
+	static final int RIGHT_ARM_AT = 56;
+	static final int ENCODER_AT = 60;
+	static final int FLAGS_AT = 64;
+	static final int LIFT_STATE_AT = 65;
+	static final int TARGETS_AT = 66;
+	static final int PAIRS_AT = 68;
+	static final int ANGLE_AT = 72;
+	static final int RANGE_AT = 76;
+	static final int BUSY_AT = 80;
+
+	// Flag bits
+	static final int SOLENOID_0 = 1;
+	static final int SOLENOID_1 = 1 << 1;
+	static final int RELAY_LIGHT = 1 << 2;
+	static final int LIFT_HOME = 1 << 3;
+	static final int COMPRESSOR = 1 << 4;
+	static final int VISION_STALE = 1 << 5;
+	static final int HAS_PAIR = 1 << 6;
+	static final int CALIBRATED = 1 << 7;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer map;
+	private final int records;
+
+	private int base; // of the record being filled
+	private int flags;
+
+	// Statistics
+	volatile long written;
+
+	/** Creates a new log; fails rather than overwrite an existing file. */
+	public MatchLog(File path, int records) throws IOException {
+		this.records = records;
+		if (path.exists())
+			throw new IOException(path + " already exists");
+
+		long length = HEADER + (long) records * RECORD;
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("log file too large: " + length + " bytes");
+
+		file = new RandomAccessFile(path, "rw");
+		file.setLength(length);
+		map = file.getChannel().map(MapMode.READ_WRITE, 0, length);
+		map.order(ByteOrder.LITTLE_ENDIAN);
+
+		map.putLong(0, MAGIC);
+		map.putInt(VERSION_AT, VERSION);
+		map.putInt(RECORDS_AT, records);
+		map.putInt(RECORD_SIZE_AT, RECORD);
+		map.putLong(WRITTEN_AT, 0);
+		for (int i = 0; i < records; i++)
+			map.putLong(HEADER + i * RECORD + SEQUENCE_AT, -1);
+
+		// Fault the pages in now rather than on the first lap of the ring
+		map.load();
+	}
+
+	/**
+	 * The next free log file in directory, match-0001.log and up, one past
+	 * the highest there. Only the newest keep logs are kept; older ones are
+	 * deleted to bound disk use.
+	 */
+	public static File nextFile(File directory, int keep) {
+		int last = 0;
+		String[] names = directory.list();
+		if (names != null) {
+			for (String name : names) {
+				int index = index(name);
+				last = Math.max(last, index);
+			}
+			for (String name : names) {
+				int index = index(name);
+				if (index > 0 && index <= last + 1 - keep)
+					new File(directory, name).delete();
+			}
+		}
+		return new File(directory, String.format("match-%04d.log", last + 1));
+	}
+
+	private static int index(String name) {
+		if (!name.startsWith("match-") || !name.endsWith(".log"))
+			return 0;
+		try {
+			return Integer.parseInt(name.substring(6, name.length() - 4));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/** Starts the next record; fields not set keep the previous lap's values. */
+	public void begin(long timestamp) {
+		base = HEADER + (int) (written % records) * RECORD;
+		flags = 0;
+		map.putLong(base + SEQUENCE_AT, -1);
+		map.putLong(base + TIMESTAMP_AT, timestamp);
+	}
+
+	public void gamepad(double leftX, double leftY, double rightX, double rightY, int buttons) {
+		map.putFloat(base + LEFT_X_AT, (float) leftX);
+		map.putFloat(base + LEFT_Y_AT, (float) leftY);
+		map.putFloat(base + RIGHT_X_AT, (float) rightX);
+		map.putFloat(base + RIGHT_Y_AT, (float) rightY);
+		map.putInt(base + BUTTONS_AT, buttons);
+	}
+
+	public void drive(double x, double y, double rotation) {
+		map.putFloat(base + DRIVE_X_AT, (float) x);
+		map.putFloat(base + DRIVE_Y_AT, (float) y);
+		map.putFloat(base + ROTATION_AT, (float) rotation);
+	}
+
+	public void motors(double lift, double leftArm, double rightArm) {
+		map.putFloat(base + LIFT_AT, (float) lift);
+		map.putFloat(base + LEFT_ARM_AT, (float) leftArm);
+		map.putFloat(base + RIGHT_ARM_AT, (float) rightArm);
+	}
+
+	/** @param flags any of the flag bits up to COMPRESSOR */
+	public void state(int encoder, LiftState liftState, int flags) {
+		map.putInt(base + ENCODER_AT, encoder);
+		map.put(base + LIFT_STATE_AT, (byte) liftState.ordinal());
+		this.flags |= flags;
+	}
+
+	public void vision(VisionResult result, boolean stale) {
+		map.putShort(base + TARGETS_AT, (short) result.targets);
+		map.putShort(base + PAIRS_AT, (short) result.pairs);
+		map.putFloat(base + ANGLE_AT, (float) result.getAngle());
+		map.putFloat(base + RANGE_AT, (float) result.getRange());
+		if (stale)
+			flags |= VISION_STALE;
+		if (result.hasPair())
+			flags |= HAS_PAIR;
+		if (result.isCalibrated())
+			flags |= CALIBRATED;
+	}
+
+	/** @param busy fraction of the loop period the last iteration used */
+	public void busy(double busy) {
+		map.putFloat(base + BUSY_AT, (float) busy);
+	}
+
+	/** Finishes the record started by begin. */
+	public void commit() {
+		map.put(base + FLAGS_AT, (byte) flags);
+		long sequence = written;
+		map.putLong(base + SEQUENCE_AT, sequence);
+		written = sequence + 1;
+		map.putLong(WRITTEN_AT, written);
+	}
+
+	/** Flushes the ring to disk and closes it. Not for the hot path. */
+	public void close() throws IOException {
+		map.force();
+		file.close();
+	}
+
+	@Override
+	public String toString() {
+		return "MatchLog{records=" + records + ",written=" + written + "}";
+	}
+
+}
@@ -0,0 +1,107 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Offline reader for MatchLog files: writes every complete record, oldest
+ * first, as one CSV row. Run on a laptop after copying the log off the
+ * robot:
+ * 
+ * <pre>
+ * java -cp bin org.usfirst.frc.team2508.robot.MatchLogDecoder match.log [match.csv]
+ * </pre>
+ */
+public class MatchLogDecoder {
+
+	static final String COLUMNS = "sequence,time,left x,left y,right x,right y,buttons,drive x,drive y,rotation,"
+			+ "lift,left arm,right arm,encoder,solenoid 0,solenoid 1,relay light,lift home,compressor,"
+			+ "lift state,targets,pairs,vision stale,has pair,calibrated,angle,range,busy";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: MatchLogDecoder <match.log> [out.csv]");
+			System.exit(1);
+		}
+		PrintStream out = args.length > 1 ? new PrintStream(new File(args[1])) : System.out;
+		int rows = decode(new File(args[0]), out);
+		out.flush();
+		if (out != System.out)
+			out.close();
+		System.err.println(rows + " records");
+	}
+
+	/** @return the number of records written */
+	public static int decode(File path, PrintStream out) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			MappedByteBuffer map = file.getChannel().map(MapMode.READ_ONLY, 0, file.length());
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			if (map.getLong(0) != MatchLog.MAGIC || map.getInt(MatchLog.VERSION_AT) != MatchLog.VERSION)
+				throw new IOException(path + " is not a match log");
+
+			int records = map.getInt(MatchLog.RECORDS_AT);
+			int recordSize = map.getInt(MatchLog.RECORD_SIZE_AT);
+			long end = map.getLong(MatchLog.WRITTEN_AT);
+			long first = Math.max(0, end - records);
+
+			LiftState[] liftStates = LiftState.values();
+			long start = -1;
+			int rows = 0;
+			out.println(COLUMNS);
+			for (long sequence = first; sequence < end; sequence++) {
+				int base = MatchLog.HEADER + (int) (sequence % records) * recordSize;
+				if (map.getLong(base + MatchLog.SEQUENCE_AT) != sequence)
+					continue; // torn by a reset mid-write
+				long timestamp = map.getLong(base + MatchLog.TIMESTAMP_AT);
+				if (start < 0)
+					start = timestamp;
+				int flags = map.get(base + MatchLog.FLAGS_AT);
+				int liftState = map.get(base + MatchLog.LIFT_STATE_AT);
+
+				StringBuilder row = new StringBuilder(256);
+				row.append(sequence).append(',').append((timestamp - start) / 1e9);
+				appendFloats(row, map, base, MatchLog.LEFT_X_AT, 4);
+				row.append(',').append(map.getInt(base + MatchLog.BUTTONS_AT));
+				appendFloats(row, map, base, MatchLog.DRIVE_X_AT, 6);
+				row.append(',').append(map.getInt(base + MatchLog.ENCODER_AT));
+				appendFlag(row, flags, MatchLog.SOLENOID_0);
+				appendFlag(row, flags, MatchLog.SOLENOID_1);
+				appendFlag(row, flags, MatchLog.RELAY_LIGHT);
+				appendFlag(row, flags, MatchLog.LIFT_HOME);
+				appendFlag(row, flags, MatchLog.COMPRESSOR);
+				row.append(',').append(liftState >= 0 && liftState < liftStates.length ? liftStates[liftState] : "?");
+				row.append(',').append(map.getShort(base + MatchLog.TARGETS_AT));
+				row.append(',').append(map.getShort(base + MatchLog.PAIRS_AT));
+				appendFlag(row, flags, MatchLog.VISION_STALE);
+				appendFlag(row, flags, MatchLog.HAS_PAIR);
+				appendFlag(row, flags, MatchLog.CALIBRATED);
+				appendFloats(row, map, base, MatchLog.ANGLE_AT, 3);
+				out.println(row);
+				rows++;
+			}
+			return rows;
+		} finally {
+			file.close();
+		}
+	}
+
+	private static void appendFloats(StringBuilder row, MappedByteBuffer map, int base, int at, int count) {
+		for (int i = 0; i < count; i++) {
+			float value = map.getFloat(base + at + i * 4);
+			row.append(',');
+			if (!Float.isNaN(value))
+				row.append(value);
+		}
+	}
+
+	private static void appendFlag(StringBuilder row, int flags, int flag) {
+		row.append(',').append((flags & flag) != 0 ? 1 : 0);
+	}
+
+}
@@ -0,0 +1,255 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.ni.vision.NIVision;
+import com.ni.vision.NIVision.ColorMode;
+import com.ni.vision.NIVision.DrawMode;
+import com.ni.vision.NIVision.GetImageSizeResult;
+import com.ni.vision.NIVision.Image;
+import com.ni.vision.NIVision.ImageInfo;
+import com.ni.vision.NIVision.ImageType;
+import com.ni.vision.NIVision.InterpolationMethod;
+import com.ni.vision.NIVision.Range;
+import com.ni.vision.NIVision.Rect;
+import com.ni.vision.NIVision.ScalingMode;
+import com.ni.vision.NIVision.ShapeMode;
+
+/**
+ * VisionBackend on the roboRIO's NIVision library. A region smaller than the
+ * frame is copied into the frame's crop image and only that is thresholded,
+ * so the mask is then the size of the region.
+ */
+public class NIVisionBackend implements VisionBackend {
+
+	private final ParticleMeasurer measurer = new ParticleMeasurer();
+	private final Rect crop = new Rect(0, 0, 0, 0);
+	private final Rect box = new Rect(0, 0, 0, 0); // publish thread only
+
+	// Downscaled copies for streaming, publish thread only
+	private Image streamImage;
+	private Image streamBinary;
+
+	static final int OVERLAY_COLOR = 0x00FF00;
+	static final int OVERLAY_MASK = 128;
+
+	// NIVision copies of the last ColorThreshold used
+	private ColorThreshold range;
+	private Range red, green, blue;
+
+	public Frame createFrame() {
+		return new NIVisionFrame();
+	}
+
+	public void disposeFrame(Frame frame) {
+		NIVisionFrame f = (NIVisionFrame) frame;
+		f.image.free();
+		f.binary.free();
+		f.crop.free();
+		f.small.free();
+	}
+
+	public void threshold(Frame frame, ColorThreshold range, Region region) {
+		setRange(range);
+
+		NIVisionFrame f = (NIVisionFrame) frame;
+		Image source = f.image;
+		if (!region.isFull(f.width, f.height)) {
+			crop.left = region.left;
+			crop.top = region.top;
+			crop.width = region.width;
+			crop.height = region.height;
+			NIVision.imaqScale(f.crop, f.image, 1, 1, ScalingMode.SCALE_LARGER, crop);
+			source = f.crop;
+			setMask(f, region.left, region.top, region.width, region.height, 1);
+		} else {
+			setMask(f, 0, 0, f.width, f.height, 1);
+		}
+		NIVision.imaqColorThreshold(f.binary, source, 255, ColorMode.RGB, red, green, blue);
+	}
+
+	public int measure(Frame frame, Region region, TargetBuffer out) {
+		NIVisionFrame f = (NIVisionFrame) frame;
+		int particles = measurer.measure(f.binary, out);
+		if (!region.isFull(f.width, f.height)) {
+			for (int i = 0; i < particles; i++) {
+				out.x[i] += region.left;
+				out.y[i] += region.top;
+			}
+		}
+		return particles;
+	}
+
+	public int measureDecimated(Frame frame, ColorThreshold range, Region region, int factor, TargetBuffer out) {
+		setRange(range);
+
+		NIVisionFrame f = (NIVisionFrame) frame;
+		crop.left = region.left;
+		crop.top = region.top;
+		crop.width = region.width;
+		crop.height = region.height;
+		int columns = Math.max(1, region.width / factor);
+		int rows = Math.max(1, region.height / factor);
+		NIVision.imaqResample(f.small, f.image, columns, rows, InterpolationMethod.ZERO_ORDER, crop);
+		setMask(f, region.left, region.top, columns, rows, factor);
+		NIVision.imaqColorThreshold(f.binary, f.small, 255, ColorMode.RGB, red, green, blue);
+
+		int particles = measurer.measure(f.binary, out);
+		out.rescale(factor, region.left, region.top);
+		return particles;
+	}
+
+	public boolean readPixels(Frame frame, ByteBuffer out) {
+		NIVisionFrame f = (NIVisionFrame) frame;
+		ByteBuffer pixels = pixels(f.image);
+		if (pixels == null)
+			return false;
+
+		int stride = pixels.capacity() / f.height;
+		int row = f.width * 4;
+		for (int y = 0; y < f.height; y++) {
+			pixels.limit(y * stride + row).position(y * stride);
+			out.put(pixels);
+		}
+		return true;
+	}
+
+	public boolean writePixels(Frame frame, ByteBuffer in, int width, int height) {
+		NIVisionFrame f = (NIVisionFrame) frame;
+		NIVision.imaqSetImageSize(f.image, width, height);
+		ByteBuffer pixels = pixels(f.image);
+		if (pixels == null)
+			return false;
+		f.width = width;
+		f.height = height;
+
+		int stride = pixels.capacity() / height;
+		int row = width * 4;
+		int limit = in.limit();
+		for (int y = 0; y < height; y++) {
+			pixels.position(y * stride);
+			in.limit(in.position() + row);
+			pixels.put(in);
+		}
+		in.limit(limit);
+		return true;
+	}
+
+	/**
+	 * Wraps all rows (including padding) of an RGB image's pixel memory, or
+	 * returns null if native memory cannot be read.
+	 */
+	private ByteBuffer pixels(Image image) {
+		return pixels(image, 4);
+	}
+
+	private ByteBuffer pixels(Image image, int bytesPerPixel) {
+		if (!NativeMemory.AVAILABLE)
+			return null;
+		ImageInfo info = NIVision.imaqGetImageInfo(image);
+		try {
+			// ImageInfo.imageStart follows the twelve 4-byte fields
+			long start = NativeMemory.pointer(NativeMemory.struct(info), 48);
+			return NativeMemory.wrap(start, info.pixelsPerLine * bytesPerPixel * info.yRes);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		} finally {
+			info.free();
+		}
+	}
+
+	private void setRange(ColorThreshold range) {
+		if (range != this.range) {
+			red = new Range(range.redMin, range.redMax);
+			green = new Range(range.greenMin, range.greenMax);
+			blue = new Range(range.blueMin, range.blueMax);
+			this.range = range;
+		}
+	}
+
+	public Image getImage(Frame frame, boolean binary, int scale) {
+		NIVisionFrame f = (NIVisionFrame) frame;
+		Image image = binary ? f.binary : f.image;
+		int width = binary ? f.maskWidth : f.width;
+		int height = binary ? f.maskHeight : f.height;
+
+		if (scale > 1) {
+			if (streamImage == null) {
+				streamImage = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
+				streamBinary = NIVision.imaqCreateImage(ImageType.IMAGE_U8, 0);
+			}
+			Image scaled = binary ? streamBinary : streamImage;
+			GetImageSizeResult size = NIVision.imaqGetImageSize(image);
+			width = Math.max(1, size.width / scale);
+			height = Math.max(1, size.height / scale);
+			NIVision.imaqResample(scaled, image, width, height, InterpolationMethod.ZERO_ORDER, NIVision.NO_RECT);
+			image = scaled;
+		}
+
+		Overlay overlay = f.overlay;
+		if (overlay.size > 0) {
+			if (binary)
+				drawOverlay(image, overlay, f.maskLeft, f.maskTop, f.maskFactor * scale, width, height, 1,
+						OVERLAY_MASK);
+			else
+				drawOverlay(image, overlay, 0, 0, scale, width, height, 4, OVERLAY_COLOR);
+		}
+		return image;
+	}
+
+	/**
+	 * Outlines every box of the overlay in one pass over the image's pixel
+	 * memory, or with one draw call per box if that cannot be read. Boxes are
+	 * moved by (-left, -top) and shrunk by factor to land on the image.
+	 */
+	private void drawOverlay(Image image, Overlay overlay, int left, int top, int factor, int width, int height,
+			int bytesPerPixel, int value) {
+		ByteBuffer pixels = pixels(image, bytesPerPixel);
+		int stride = pixels != null ? pixels.capacity() / height : 0;
+		if (pixels != null)
+			pixels.order(ByteOrder.LITTLE_ENDIAN);
+
+		for (int i = 0; i < overlay.size; i++) {
+			int x0 = Math.max(0, (overlay.left[i] - left) / factor);
+			int y0 = Math.max(0, (overlay.top[i] - top) / factor);
+			int x1 = Math.min(width, (overlay.left[i] + overlay.width[i] - left) / factor) - 1;
+			int y1 = Math.min(height, (overlay.top[i] + overlay.height[i] - top) / factor) - 1;
+			if (x0 > x1 || y0 > y1)
+				continue;
+
+			if (pixels == null) {
+				box.left = x0;
+				box.top = y0;
+				box.width = x1 - x0 + 1;
+				box.height = y1 - y0 + 1;
+				NIVision.imaqDrawShapeOnImage(image, image, box, DrawMode.DRAW_VALUE, ShapeMode.SHAPE_RECT, value);
+				continue;
+			}
+			for (int x = x0; x <= x1; x++) {
+				put(pixels, y0 * stride + x * bytesPerPixel, bytesPerPixel, value);
+				put(pixels, y1 * stride + x * bytesPerPixel, bytesPerPixel, value);
+			}
+			for (int y = y0 + 1; y < y1; y++) {
+				put(pixels, y * stride + x0 * bytesPerPixel, bytesPerPixel, value);
+				put(pixels, y * stride + x1 * bytesPerPixel, bytesPerPixel, value);
+			}
+		}
+	}
+
+	private static void put(ByteBuffer pixels, int index, int bytesPerPixel, int value) {
+		if (bytesPerPixel == 1)
+			pixels.put(index, (byte) value);
+		else
+			pixels.putInt(index, value);
+	}
+
+	private static void setMask(NIVisionFrame f, int left, int top, int width, int height, int factor) {
+		f.maskLeft = left;
+		f.maskTop = top;
+		f.maskWidth = width;
+		f.maskHeight = height;
+		f.maskFactor = factor;
+	}
+
+}
@@ -0,0 +1,33 @@
+package org.usfirst.frc.team2508.robot;
+
+import com.ni.vision.NIVision;
+import com.ni.vision.NIVision.Image;
+import com.ni.vision.NIVision.ImageType;
+
+/**
+ * Frame backed by native NIVision images: the RGB capture, the U8 mask
+ * thresholded from it, and scratch space for a region or a decimated copy
+ * of the frame.
+ */
+public class NIVisionFrame extends Frame {
+
+	Image image;
+	Image binary;
+	Image crop;
+	Image small; // decimated copy
+
+	// Where the mask lies in the frame, set by the backend when thresholding
+	int maskLeft;
+	int maskTop;
+	int maskWidth;
+	int maskHeight;
+	int maskFactor = 1;
+
+	public NIVisionFrame() {
+		image = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
+		binary = NIVision.imaqCreateImage(ImageType.IMAGE_U8, 100);
+		crop = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
+		small = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.ni.vision.NIVision;
+
+/**
+ * Reads NIVision structures the 2015 Java wrapper does not expose (particle
+ * report tables, image pixel memory) through the wrapper's own private
+ * helpers and the fields of java.nio.Buffer. Check {@link #AVAILABLE} and
+ * fall back to the public API when it is false.
+ * <p>
+ * Reading a table of separately allocated rows would mean one new buffer
+ * per row; a view from {@link #view()} is instead moved over each row with
+ * {@link #move}, which allocates nothing.
+ */
+public class NativeMemory {
+
+	static final int POINTER_SIZE = 4; // roboRIO is 32-bit ARM
+	static final boolean AVAILABLE;
+
+	private static Field backing;
+	private static Method directBuffer;
+	private static Field address;
+	private static Field capacity;
+
+	static {
+		boolean available;
+		try {
+			backing = Class.forName("com.ni.vision.NIVision$DisposedStruct").getDeclaredField("backing");
+			backing.setAccessible(true);
+			directBuffer = NIVision.class.getDeclaredMethod("newDirectByteBuffer", long.class, int.class);
+			directBuffer.setAccessible(true);
+			address = Buffer.class.getDeclaredField("address");
+			address.setAccessible(true);
+			capacity = Buffer.class.getDeclaredField("capacity");
+			capacity.setAccessible(true);
+			available = true;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			System.out.println("NIVision native memory not readable");
+			available = false;
+		}
+		AVAILABLE = available;
+	}
+
+	/** The buffer behind an NIVision struct (any DisposedStruct subclass). */
+	static ByteBuffer struct(Object struct) throws ReflectiveOperationException {
+		return (ByteBuffer) backing.get(struct);
+	}
+
+	/** The native address of a direct buffer. */
+	static long address(ByteBuffer buffer) throws ReflectiveOperationException {
+		return address.getLong(buffer);
+	}
+
+	/** Reads the pointer stored at offset in a native-order buffer. */
+	static long pointer(ByteBuffer buffer, int offset) {
+		if (POINTER_SIZE == 4)
+			return buffer.getInt(offset) & 0xFFFFFFFFL;
+		return buffer.getLong(offset);
+	}
+
+	/** Wraps size bytes of native memory at address, in native byte order. */
+	static ByteBuffer wrap(long address, int size) throws ReflectiveOperationException {
+		return ((ByteBuffer) directBuffer.invoke(null, address, size)).order(ByteOrder.nativeOrder());
+	}
+
+	/** A reusable buffer for {@link #move}, in native byte order. */
+	static ByteBuffer view() {
+		return ByteBuffer.allocateDirect(8).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Points a buffer from {@link #view()} at size bytes of native memory at
+	 * address, with position 0 and limit size.
+	 */
+	static ByteBuffer move(ByteBuffer view, long address, int size) throws ReflectiveOperationException {
+		NativeMemory.address.setLong(view, address);
+		NativeMemory.capacity.setInt(view, size);
+		view.clear();
+		return view;
+	}
+
+}
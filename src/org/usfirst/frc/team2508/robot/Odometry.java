@@ -0,0 +1,254 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.wpi.first.wpilibj.Encoder;
+
+/**
+ * Tracks where the robot is from its four mecanum wheel encoders. A thread
+ * of its own samples them at a fixed rate and integrates the mecanum forward
+ * kinematics into a field pose (x forward, y left, in meters; heading in
+ * radians, counter-clockwise) relative to where it started or was last
+ * reset.
+ * <p>
+ * Every sample goes into a ring of timestamped poses that any thread can
+ * read, by time or the latest, without locks or allocation. The ring is a
+ * seqlock: the writer makes the version odd while it writes a slot, and a
+ * reader retries if the version moved while it read. The samples are kept
+ * as double bits in an AtomicLongArray so those reads are ordered and never
+ * torn.
+ */
+public class Odometry {
+
+	static final int HISTORY = 512; // samples kept, a power of two
+	static final int FIELDS = 4; // time, x, y, heading
+
+	private final Encoder frontLeft;
+	private final Encoder frontRight;
+	private final Encoder rearLeft;
+	private final Encoder rearRight;
+	private final double metersPerCount;
+	private final double turnRadius; // (track width + wheel base) / 2
+	private final LoopScheduler loop;
+
+	private final AtomicLongArray history = new AtomicLongArray(HISTORY * FIELDS);
+	private volatile long version; // odd while a slot is being written
+	private volatile long written; // samples in history, ever
+
+	// Reset request, picked up by the odometry thread
+	private volatile boolean resetPending;
+	private volatile double resetX, resetY, resetHeading;
+
+	private volatile boolean running;
+
+	/**
+	 * @param metersPerCount wheel travel per encoder count
+	 * @param trackWidth meters between left and right wheels
+	 * @param wheelBase meters between front and rear wheels
+	 * @param rate samples per second
+	 */
+	public Odometry(Encoder frontLeft, Encoder frontRight, Encoder rearLeft, Encoder rearRight,
+			double metersPerCount, double trackWidth, double wheelBase, double rate) {
+		this.frontLeft = frontLeft;
+		this.frontRight = frontRight;
+		this.rearLeft = rearLeft;
+		this.rearRight = rearRight;
+		this.metersPerCount = metersPerCount;
+		this.turnRadius = (trackWidth + wheelBase) / 2;
+		this.loop = new LoopScheduler(rate);
+	}
+
+	public void start() {
+		if (running)
+			return;
+		running = true;
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				track();
+			}
+		}, "Odometry");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	public void stop() {
+		running = false;
+	}
+
+	/** Sets the current pose; takes effect on the next sample. */
+	public void reset(double x, double y, double heading) {
+		resetX = x;
+		resetY = y;
+		resetHeading = heading;
+		resetPending = true;
+	}
+
+	// -------------------------------------------------------------
+	// Readers, any thread
+	// -------------------------------------------------------------
+	/**
+	 * Copies the newest pose into out as x, y, heading.
+	 * 
+	 * @return its System.nanoTime(), or 0 if there is none yet
+	 */
+	public long getLatest(double[] out) {
+		while (true) {
+			long v = version;
+			long n = written;
+			if ((v & 1) != 0)
+				continue;
+			if (n == 0)
+				return 0;
+			int base = slot(n - 1);
+			long time = history.get(base);
+			read(base, out);
+			if (version == v)
+				return time;
+		}
+	}
+
+	/**
+	 * Copies the pose at a given System.nanoTime() into out, interpolated
+	 * between the samples either side. Times before the oldest sample kept or
+	 * after the newest are clamped to those.
+	 * 
+	 * @return false if there are no samples yet
+	 */
+	public boolean getPoseAt(long time, double[] out) {
+		while (true) {
+			long v = version;
+			if ((v & 1) != 0)
+				continue;
+			long n = written;
+			if (n == 0)
+				return false;
+			long oldest = Math.max(0, n - HISTORY + 1); // the slot after n-1 may be overwritten next
+
+			// Last sample at or before time, by binary search over sequence numbers
+			long lo = oldest;
+			long hi = n - 1;
+			if (time <= history.get(slot(lo))) {
+				read(slot(lo), out);
+			} else if (time >= history.get(slot(hi))) {
+				read(slot(hi), out);
+			} else {
+				while (hi - lo > 1) {
+					long mid = (lo + hi) >>> 1;
+					if (history.get(slot(mid)) <= time)
+						lo = mid;
+					else
+						hi = mid;
+				}
+				interpolate(slot(lo), slot(hi), time, out);
+			}
+			if (version == v)
+				return true;
+		}
+	}
+
+	/** Samples taken since start. */
+	public long getSamples() {
+		return written;
+	}
+
+	private static int slot(long sequence) {
+		return (int) (sequence & (HISTORY - 1)) * FIELDS;
+	}
+
+	private double field(int index) {
+		return Double.longBitsToDouble(history.get(index));
+	}
+
+	private void read(int base, double[] out) {
+		out[0] = field(base + 1);
+		out[1] = field(base + 2);
+		out[2] = field(base + 3);
+	}
+
+	private void interpolate(int a, int b, long time, double[] out) {
+		long ta = history.get(a);
+		long tb = history.get(b);
+		double f = tb == ta ? 0 : (double) (time - ta) / (tb - ta);
+		out[0] = field(a + 1) + f * (field(b + 1) - field(a + 1));
+		out[1] = field(a + 2) + f * (field(b + 2) - field(a + 2));
+		double turn = field(b + 3) - field(a + 3);
+		out[2] = field(a + 3) + f * Math.atan2(Math.sin(turn), Math.cos(turn));
+	}
+
+	// -------------------------------------------------------------
+	// Odometry thread
+	// -------------------------------------------------------------
+	private void track() {
+		double x = 0;
+		double y = 0;
+		double heading = 0;
+		int fl = frontLeft.get();
+		int fr = frontRight.get();
+		int rl = rearLeft.get();
+		int rr = rearRight.get();
+
+		loop.start();
+		while (running) {
+			long now = System.nanoTime();
+			int fl1 = frontLeft.get();
+			int fr1 = frontRight.get();
+			int rl1 = rearLeft.get();
+			int rr1 = rearRight.get();
+
+			if (resetPending) {
+				resetPending = false;
+				x = resetX;
+				y = resetY;
+				heading = resetHeading;
+			} else {
+				double dfl = (fl1 - fl) * metersPerCount;
+				double dfr = (fr1 - fr) * metersPerCount;
+				double drl = (rl1 - rl) * metersPerCount;
+				double drr = (rr1 - rr) * metersPerCount;
+
+				// Mecanum forward kinematics, rollers in an X seen from above
+				double forward = (dfl + dfr + drl + drr) / 4;
+				double left = (-dfl + dfr + drl - drr) / 4;
+				double turn = (-dfl + dfr - drl + drr) / (4 * turnRadius);
+
+				// Integrate along the mean heading over the step
+				double mid = heading + turn / 2;
+				double cos = Math.cos(mid);
+				double sin = Math.sin(mid);
+				x += forward * cos - left * sin;
+				y += forward * sin + left * cos;
+				heading += turn;
+			}
+			fl = fl1;
+			fr = fr1;
+			rl = rl1;
+			rr = rr1;
+
+			publish(now, x, y, heading);
+			loop.waitForNextCycle();
+		}
+	}
+
+	private void publish(long time, double x, double y, double heading) {
+		long n = written;
+		int base = slot(n);
+		long v = version;
+		version = v + 1;
+		history.set(base, time);
+		history.set(base + 1, Double.doubleToRawLongBits(x));
+		history.set(base + 2, Double.doubleToRawLongBits(y));
+		history.set(base + 3, Double.doubleToRawLongBits(heading));
+		written = n + 1;
+		version = v + 2;
+	}
+
+	@Override
+	public String toString() {
+		double[] pose = new double[3];
+		getLatest(pose);
+		return "Odometry{x=" + pose[0] + ",y=" + pose[1] + ",heading=" + Math.toDegrees(pose[2]) + ",samples="
+				+ written + "}";
+	}
+
+}
@@ -0,0 +1,34 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Annotations for one frame, collected while it is analysed and drawn in a
+ * single pass by the backend only if the frame is actually streamed. Boxes
+ * are kept in frame coordinates; shapes past the capacity are dropped.
+ */
+public class Overlay {
+
+	static final int MAX_BOXES = 16;
+
+	final int[] left = new int[MAX_BOXES];
+	final int[] top = new int[MAX_BOXES];
+	final int[] width = new int[MAX_BOXES];
+	final int[] height = new int[MAX_BOXES];
+	int size;
+
+	public void clear() {
+		size = 0;
+	}
+
+	/** Adds the outline of a box; false if the overlay is full. */
+	public boolean add(double x, double y, double w, double h) {
+		if (size == MAX_BOXES)
+			return false;
+		left[size] = (int) x;
+		top[size] = (int) y;
+		width[size] = (int) w;
+		height[size] = (int) h;
+		size++;
+		return true;
+	}
+
+}
@@ -1,7 +1,5 @@
 package org.usfirst.frc.team2508.robot;
 
-import com.ni.vision.NIVision.Image;
-
 public class Pair {
 
 	Target a;
@@ -18,19 +16,27 @@ public class Pair {
 		return (ratioA + ratioB) / 2.0;
 	}
 	
+	public double getHeight() {
+		return (a.height + b.height) / 2.0;
+	}
+
 	public double getAngle() {
-		// -89.85x^2 + 313.72x - 219.194
-		double ratio = getHeightToWidth();
-		double angle = 0;
-		angle += -89.85 * Math.pow(ratio, 2);
-		angle += 313.72 * ratio;
-		angle += -219.194;
-		return angle;
+		return AngleEstimator.getInstance().angle(getHeightToWidth());
+	}
+
+	/** False if getAngle() was clamped to the edge of the calibration. */
+	public boolean isAngleCalibrated() {
+		return AngleEstimator.getInstance().isAngleCalibrated(getHeightToWidth());
+	}
+
+	/** Distance in meters, or NaN without a range calibration. */
+	public double getRange() {
+		return AngleEstimator.getInstance().range(getHeight());
 	}
 	
-	public void fill(Image image) {
-		a.fill(image);
-		b.fill(image);
+	public void annotate(Overlay overlay) {
+		a.annotate(overlay);
+		b.annotate(overlay);
 	}
 	
 	@Override
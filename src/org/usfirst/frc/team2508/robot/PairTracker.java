@@ -0,0 +1,135 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Follows one Pair from frame to frame and smooths its angle and center
+ * position with alpha-beta filters, so the drive code sees a steady,
+ * predictable target instead of whichever pair a frame happened to find
+ * first.
+ * <p>
+ * Of all the pairs in a frame, the one whose center is nearest where the
+ * track predicted it is matched to the track, if it is within the gate. A
+ * frame with no pair in the gate is a miss, and after maxMisses misses in a
+ * row the track is dropped and restarted on the next pair. update() is only
+ * called by the vision process thread; getState() can be read from any
+ * thread without locking.
+ */
+public class PairTracker {
+
+	private double alpha = 0.5; // how much of the residual goes into the value
+	private double beta = 0.1; // and into its rate
+	private double gate = 60; // pixels
+	private int maxMisses = 5;
+
+	// Filter state, process thread only
+	private int id;
+	private int lastId;
+	private long timestamp;
+	private int misses;
+	private double angle, angleRate;
+	private double x, xRate;
+	private double y, yRate;
+
+	private volatile TrackState state = TrackState.NONE;
+
+	public void setGains(double alpha, double beta) {
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	public void setGate(double pixels) {
+		gate = pixels;
+	}
+
+	public void setMaxMisses(int frames) {
+		maxMisses = frames;
+	}
+
+	public TrackState getState() {
+		return state;
+	}
+
+	/**
+	 * Feeds one frame's pairs to the track. The pair nearest the track's
+	 * prediction is used if it is within the gate; if none is, the frame
+	 * counts as a miss, the same as a frame without pairs. With no track, a
+	 * new one starts on the first pair.
+	 */
+	public void update(long timestamp, TargetBuffer targets, PairingEngine pairing) {
+		int pairs = pairing.size();
+		double dt = (timestamp - this.timestamp) / 1e9;
+
+		if (id != 0 && dt > 0 && pairs > 0) {
+			double px = x + xRate * dt;
+			double py = y + yRate * dt;
+			int nearest = -1;
+			double best = gate;
+			for (int k = 0; k < pairs; k++) {
+				double d = Math.hypot(centerX(targets, pairing, k) - px, centerY(targets, pairing, k) - py);
+				if (d <= best) {
+					best = d;
+					nearest = k;
+				}
+			}
+			if (nearest >= 0) {
+				double pa = angle + angleRate * dt;
+
+				double r = angle(targets, pairing, nearest) - pa;
+				angle = pa + alpha * r;
+				angleRate += beta / dt * r;
+
+				r = centerX(targets, pairing, nearest) - px;
+				x = px + alpha * r;
+				xRate += beta / dt * r;
+
+				r = centerY(targets, pairing, nearest) - py;
+				y = py + alpha * r;
+				yRate += beta / dt * r;
+
+				this.timestamp = timestamp;
+				misses = 0;
+				publish();
+				return;
+			}
+		}
+
+		if (id != 0 && ++misses > maxMisses)
+			id = 0;
+		if (id == 0 && pairs > 0) {
+			// Start a new track on the first pair
+			id = ++lastId;
+			this.timestamp = timestamp;
+			misses = 0;
+			angle = angle(targets, pairing, 0);
+			x = centerX(targets, pairing, 0);
+			y = centerY(targets, pairing, 0);
+			angleRate = xRate = yRate = 0;
+		}
+		publish();
+	}
+
+	private static double centerX(TargetBuffer t, PairingEngine pairing, int k) {
+		int a = pairing.getA(k);
+		int b = pairing.getB(k);
+		return (Math.min(t.x[a], t.x[b]) + Math.max(t.x[a] + t.width[a], t.x[b] + t.width[b])) / 2;
+	}
+
+	private static double centerY(TargetBuffer t, PairingEngine pairing, int k) {
+		int a = pairing.getA(k);
+		int b = pairing.getB(k);
+		return (Math.min(t.y[a], t.y[b]) + Math.max(t.y[a] + t.height[a], t.y[b] + t.height[b])) / 2;
+	}
+
+	/** Same as Pair.getAngle(), without boxing the pair. */
+	private static double angle(TargetBuffer t, PairingEngine pairing, int k) {
+		int a = pairing.getA(k);
+		int b = pairing.getB(k);
+		double ratio = (t.height[a] / t.width[a] + t.height[b] / t.width[b]) / 2.0;
+		return AngleEstimator.getInstance().angle(ratio);
+	}
+
+	private void publish() {
+		state = id == 0 ? TrackState.NONE
+				: new TrackState(id, timestamp, misses, angle, angleRate, x, xRate, y, yRate);
+	}
+
+}
@@ -0,0 +1,175 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Finds every pair of targets whose y values are within the pairing
+ * tolerance of each other.
+ * <p>
+ * Targets are sorted by y (as indices, the buffer itself is left alone) and
+ * each one is only compared against the targets after it until the window
+ * closes, so a frame costs O(n log n) plus the number of pairs found. Each
+ * unordered pair is produced exactly once, the same way Pair.equals treats
+ * (a, b) and (b, a) as one pair.
+ */
+public class PairingEngine {
+
+	static final int MAX_PAIRS = 256;
+	static final int INSERTION_SORT_CUTOFF = 12;
+
+	private double tolerance = Target.PAIR_RANGE;
+	private int maxPairs = MAX_PAIRS;
+
+	private int[] order = new int[32];
+	private final int[] first = new int[MAX_PAIRS];
+	private final int[] second = new int[MAX_PAIRS];
+	private int count;
+	private boolean capped;
+	private double[] keys;
+	private int lt, gt; // bounds of the pivot run from the last partition
+
+	/** Frames that found more pairs than maxPairs and dropped the rest. */
+	volatile int cappedFrames;
+
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/** Maximum difference in y, in pixels, for two targets to be a pair. */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/** Caps the pairs kept per frame; at most MAX_PAIRS. */
+	public void setMaxPairs(int maxPairs) {
+		this.maxPairs = Math.max(0, Math.min(MAX_PAIRS, maxPairs));
+	}
+
+	/**
+	 * Pairs the targets in the buffer. Pairs are ordered by the y of their
+	 * upper member. Pairs past maxPairs are dropped, and the frame is counted
+	 * in cappedFrames.
+	 * 
+	 * @return the number of pairs found
+	 */
+	public int pair(TargetBuffer targets) {
+		int n = targets.size;
+		count = 0;
+		capped = false;
+		if (order.length < n)
+			order = new int[Math.max(n, order.length * 2)];
+		for (int i = 0; i < n; i++)
+			order[i] = i;
+
+		keys = targets.y;
+		sort(0, n - 1);
+		keys = null;
+
+		double[] y = targets.y;
+		for (int i = 0; i < n && !capped; i++) {
+			int a = order[i];
+			for (int j = i + 1; j < n; j++) {
+				int b = order[j];
+				if (y[b] - y[a] > tolerance)
+					break;
+				if (count == maxPairs) {
+					capped = true;
+					cappedFrames++;
+					break;
+				}
+				first[count] = a;
+				second[count] = b;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** Whether the last frame had more pairs than maxPairs. */
+	public boolean isCapped() {
+		return capped;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/** Buffer row of the upper target of pair k. */
+	public int getA(int k) {
+		return first[k];
+	}
+
+	/** Buffer row of the lower target of pair k. */
+	public int getB(int k) {
+		return second[k];
+	}
+
+	/** Boxes pair k. Only use this for pairs that leave the vision code. */
+	public Pair get(TargetBuffer targets, int k) {
+		return new Pair(targets.get(first[k]), targets.get(second[k]));
+	}
+
+	// -------------------------------------------------------------
+	// Index sort on keys, allocation free
+	// -------------------------------------------------------------
+	private void sort(int lo, int hi) {
+		while (hi - lo > INSERTION_SORT_CUTOFF) {
+			partition(lo, hi);
+			// Keys equal to the pivot are already in place. Recurse into the
+			// smaller side to bound the stack depth
+			int left = lt - 1;
+			int right = gt + 1;
+			if (left - lo < hi - right) {
+				sort(lo, left);
+				lo = right;
+			} else {
+				sort(right, hi);
+				hi = left;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			int v = order[i];
+			double key = keys[v];
+			int j = i - 1;
+			while (j >= lo && keys[order[j]] > key) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = v;
+		}
+	}
+
+	/**
+	 * Three-way partition around a median of three, so targets on the same
+	 * pixel row do not make the sort quadratic. Leaves keys below the pivot
+	 * before lt, equal from lt to gt and above after gt.
+	 */
+	private void partition(int lo, int hi) {
+		int mid = (lo + hi) >>> 1;
+		if (keys[order[mid]] < keys[order[lo]])
+			swap(mid, lo);
+		if (keys[order[hi]] < keys[order[lo]])
+			swap(hi, lo);
+		if (keys[order[mid]] < keys[order[hi]])
+			swap(mid, hi);
+		double pivot = keys[order[hi]];
+
+		int i = lo;
+		lt = lo;
+		gt = hi;
+		while (i <= gt) {
+			double key = keys[order[i]];
+			if (key < pivot)
+				swap(lt++, i++);
+			else if (key > pivot)
+				swap(i, gt--);
+			else
+				i++;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int t = order[i];
+		order[i] = order[j];
+		order[j] = t;
+	}
+
+}
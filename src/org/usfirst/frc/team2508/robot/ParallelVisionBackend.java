@@ -0,0 +1,144 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * JavaVisionBackend that splits the region being processed into horizontal
+ * tiles and thresholds and labels them on a fork/join pool.
+ * <p>
+ * Each tile is labelled on its own with a ComponentLabeller. The tiles'
+ * provisional labels are then copied into one union-find, offset so that
+ * they stay in raster order, and particles crossing a seam are joined by
+ * comparing the bottom row of one tile with the top row of the next. This
+ * gives exactly the same targets, in the same order, as the sequential
+ * backend.
+ */
+public class ParallelVisionBackend extends JavaVisionBackend {
+
+	static final int MIN_TILE_ROWS = 16;
+
+	private final ForkJoinPool pool;
+	private final Tile[] tiles;
+	private final RecursiveAction all;
+	private final ComponentLabeller merged = new ComponentLabeller();
+
+	// Work for the current invoke, read by the tiles
+	private PixelFrame frame;
+	private ColorThreshold range;
+	private Region region;
+	private int active; // tiles in use for this region
+
+	public ParallelVisionBackend(int width, int height) {
+		this(width, height, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelVisionBackend(int width, int height, int parallelism) {
+		super(width, height);
+		pool = new ForkJoinPool(parallelism);
+
+		// A couple of tiles per worker evens out uneven tiles
+		tiles = new Tile[Math.max(1, parallelism * 2)];
+		for (int i = 0; i < tiles.length; i++)
+			tiles[i] = new Tile();
+
+		all = new RecursiveAction() {
+			protected void compute() {
+				for (int i = 1; i < active; i++)
+					tiles[i].fork();
+				tiles[0].invoke();
+				for (int i = 1; i < active; i++)
+					tiles[i].join();
+			}
+		};
+	}
+
+	public int getTileCount() {
+		return tiles.length;
+	}
+
+	@Override
+	public void threshold(Frame frame, ColorThreshold range, Region region) {
+		this.range = range;
+		run((PixelFrame) frame, region);
+	}
+
+	@Override
+	public int measure(Frame frame, Region region, TargetBuffer out) {
+		this.range = null;
+		run((PixelFrame) frame, region);
+
+		// Copy every tile's provisional labels into one union-find
+		merged.clear();
+		for (int i = 0; i < active; i++) {
+			Tile tile = tiles[i];
+			ComponentLabeller t = tile.labeller;
+			tile.base = merged.labels;
+			for (int l = 0; l < t.labels; l++) {
+				int g = merged.newLabel();
+				merged.parent[g] = tile.base + t.parent[l];
+				merged.minX[g] = t.minX[l];
+				merged.minY[g] = t.minY[l];
+				merged.maxX[g] = t.maxX[l];
+				merged.maxY[g] = t.maxY[l];
+				merged.area[g] = t.area[l];
+			}
+		}
+
+		// Join particles that cross a seam
+		for (int i = 1; i < active; i++) {
+			Tile upper = tiles[i - 1];
+			Tile lower = tiles[i];
+			int[] above = upper.labeller.lastRow;
+			int[] below = lower.labeller.firstRow;
+			for (int x = 0; x < region.width; x++) {
+				if (above[x] >= 0 && below[x] >= 0)
+					merged.union(upper.base + above[x], lower.base + below[x]);
+			}
+		}
+
+		return merged.collect(out);
+	}
+
+	private void run(PixelFrame frame, Region region) {
+		this.frame = frame;
+		this.region = region;
+
+		active = Math.max(1, Math.min(tiles.length, region.height / MIN_TILE_ROWS));
+		for (int i = 0; i < active; i++) {
+			int top = region.height * i / active;
+			tiles[i].top = region.top + top;
+			tiles[i].rows = region.height * (i + 1) / active - top;
+			tiles[i].reinitialize();
+		}
+		all.reinitialize();
+		pool.invoke(all);
+		this.frame = null;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	// -------------------------------------------------------------
+	// Tile
+	// -------------------------------------------------------------
+	private class Tile extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		final ComponentLabeller labeller = new ComponentLabeller();
+		int top;
+		int rows;
+		int base; // first merged label of this tile
+
+		protected void compute() {
+			if (range != null)
+				threshold(frame, range, region.left, top, region.width, rows);
+			else
+				labeller.scan(frame.mask, frame.width, region.left, top, region.width, rows);
+		}
+
+	}
+
+}
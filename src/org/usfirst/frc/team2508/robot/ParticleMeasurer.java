@@ -0,0 +1,97 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.nio.ByteBuffer;
+
+import com.ni.vision.NIVision;
+import com.ni.vision.NIVision.Image;
+import com.ni.vision.NIVision.MeasureParticlesCalibrationMode;
+import com.ni.vision.NIVision.MeasureParticlesReport;
+import com.ni.vision.NIVision.MeasurementType;
+
+/**
+ * Measures every particle of a binary image with a single
+ * imaqMeasureParticles call and copies the results into a TargetBuffer.
+ * Used by NIVisionBackend.
+ * <p>
+ * The 2015 NIVision wrapper does not expose the measurement table of
+ * MeasureParticlesReport, so it is read straight out of the report's native
+ * memory with NativeMemory. If that is not available the measurer falls
+ * back to one imaqMeasureParticle call per particle and measurement.
+ */
+public class ParticleMeasurer {
+
+	// Column order of the report; matches TargetBuffer.add()
+	static final MeasurementType[] MEASUREMENTS = {
+			MeasurementType.MT_BOUNDING_RECT_LEFT,
+			MeasurementType.MT_BOUNDING_RECT_TOP,
+			MeasurementType.MT_BOUNDING_RECT_WIDTH,
+			MeasurementType.MT_BOUNDING_RECT_HEIGHT,
+			MeasurementType.MT_AREA };
+
+	static boolean batched = NativeMemory.AVAILABLE;
+
+	// Moved over the report's memory, so measuring allocates nothing per
+	// particle
+	private final ByteBuffer table = NativeMemory.view();
+	private final ByteBuffer values = NativeMemory.view();
+
+	/**
+	 * Replaces the contents of out with one row per particle in binary.
+	 * 
+	 * @return the number of particles measured
+	 */
+	public int measure(Image binary, TargetBuffer out) {
+		if (batched) {
+			try {
+				return measureBatched(binary, out);
+			} catch (ReflectiveOperationException e) {
+				batched = false;
+			}
+		}
+		return measureEach(binary, out);
+	}
+
+	private int measureBatched(Image binary, TargetBuffer out) throws ReflectiveOperationException {
+		// Counting first fixes the particles as 4-connected, the same as
+		// measureEach and JavaVisionBackend
+		NIVision.imaqCountParticles(binary, 0);
+		MeasureParticlesReport report = NIVision.imaqMeasureParticles(binary,
+				MeasureParticlesCalibrationMode.CALIBRATION_MODE_PIXEL, MEASUREMENTS);
+		try {
+			int particles = report.numParticles;
+			out.reset(particles);
+			if (particles == 0)
+				return 0;
+
+			// struct { double** pixelMeasurements; double** calibrated; ... }
+			NativeMemory.move(table, NativeMemory.address(NativeMemory.struct(report)), NativeMemory.POINTER_SIZE);
+			long rows = NativeMemory.pointer(table, 0);
+			NativeMemory.move(table, rows, particles * NativeMemory.POINTER_SIZE);
+
+			for (int i = 0; i < particles; i++) {
+				long row = NativeMemory.pointer(table, i * NativeMemory.POINTER_SIZE);
+				NativeMemory.move(values, row, MEASUREMENTS.length * 8);
+				out.add(values.getDouble(0), values.getDouble(8), values.getDouble(16),
+						values.getDouble(24), values.getDouble(32));
+			}
+			return particles;
+		} finally {
+			report.free();
+		}
+	}
+
+	private int measureEach(Image binary, TargetBuffer out) {
+		int particles = NIVision.imaqCountParticles(binary, 0);
+		out.reset(particles);
+
+		for (int i = 0; i < particles; i++) {
+			out.add(NIVision.imaqMeasureParticle(binary, i, 0, MEASUREMENTS[0]),
+					NIVision.imaqMeasureParticle(binary, i, 0, MEASUREMENTS[1]),
+					NIVision.imaqMeasureParticle(binary, i, 0, MEASUREMENTS[2]),
+					NIVision.imaqMeasureParticle(binary, i, 0, MEASUREMENTS[3]),
+					NIVision.imaqMeasureParticle(binary, i, 0, MEASUREMENTS[4]));
+		}
+		return particles;
+	}
+
+}
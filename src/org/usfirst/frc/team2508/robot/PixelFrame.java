@@ -0,0 +1,19 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Frame backed by plain Java arrays, used by JavaVisionBackend. Pixels are
+ * packed 0xRRGGBB, row-major; the mask holds one byte per pixel.
+ */
+public class PixelFrame extends Frame {
+
+	final int[] pixels;
+	final byte[] mask;
+
+	public PixelFrame(int width, int height) {
+		this.width = width;
+		this.height = height;
+		pixels = new int[width * height];
+		mask = new byte[width * height];
+	}
+
+}
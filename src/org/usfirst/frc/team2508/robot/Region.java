@@ -0,0 +1,48 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Mutable pixel rectangle of a frame that vision should look at. Reused
+ * frame to frame, so it is a plain set of ints rather than an NIVision Rect.
+ */
+public class Region {
+
+	int left;
+	int top;
+	int width;
+	int height;
+
+	public void set(int left, int top, int width, int height) {
+		this.left = left;
+		this.top = top;
+		this.width = width;
+		this.height = height;
+	}
+
+	public void setFull(int frameWidth, int frameHeight) {
+		set(0, 0, frameWidth, frameHeight);
+	}
+
+	/** Shrinks the region so it lies inside a frameWidth x frameHeight image. */
+	public void clip(int frameWidth, int frameHeight) {
+		int right = Math.min(frameWidth, left + width);
+		int bottom = Math.min(frameHeight, top + height);
+		left = Math.max(0, left);
+		top = Math.max(0, top);
+		width = Math.max(0, right - left);
+		height = Math.max(0, bottom - top);
+	}
+
+	public boolean isFull(int frameWidth, int frameHeight) {
+		return left == 0 && top == 0 && width == frameWidth && height == frameHeight;
+	}
+
+	public int area() {
+		return width * height;
+	}
+
+	@Override
+	public String toString() {
+		return "Region{left=" + left + ",top=" + top + ",width=" + width + ",height=" + height + "}";
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Picks the part of each frame vision has to look at. While there is a lock
+ * on a Pair, only the bounding box of the last pair grown by a motion margin
+ * is processed; when the lock is lost, and every fullScanInterval frames
+ * regardless, the whole frame is scanned so new targets are still found.
+ */
+public class RegionTracker {
+
+	private boolean enabled = true;
+	private int margin = 40; // pixels the pair may move between frames
+	private int fullScanInterval = 15;
+
+	private boolean locked;
+	private int left, top, right, bottom; // last pair's bounding box
+	private int sinceFullScan;
+
+	// Statistics
+	long fullScans;
+	long regionScans;
+	long pixelsScanned;
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled)
+			locked = false;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setMargin(int margin) {
+		this.margin = margin;
+	}
+
+	/** Scan the whole frame at least once every n frames. */
+	public void setFullScanInterval(int n) {
+		fullScanInterval = n;
+	}
+
+	public boolean isLocked() {
+		return locked;
+	}
+
+	/** Sets region to what should be processed in a frameWidth x frameHeight frame. */
+	public void next(int frameWidth, int frameHeight, Region region) {
+		if (!enabled || !locked || ++sinceFullScan >= fullScanInterval) {
+			region.setFull(frameWidth, frameHeight);
+			sinceFullScan = 0;
+			fullScans++;
+		} else {
+			region.set(left - margin, top - margin, right - left + 2 * margin, bottom - top + 2 * margin);
+			region.clip(frameWidth, frameHeight);
+			regionScans++;
+		}
+		pixelsScanned += region.area();
+	}
+
+	/** Records the pair found in the region just processed, or null if none was. */
+	public void update(Pair pair) {
+		if (pair == null || !enabled) {
+			locked = false;
+			return;
+		}
+		left = (int) Math.min(pair.a.x, pair.b.x);
+		top = (int) Math.min(pair.a.y, pair.b.y);
+		right = (int) Math.max(pair.a.x + pair.a.width, pair.b.x + pair.b.width);
+		bottom = (int) Math.max(pair.a.y + pair.a.height, pair.b.y + pair.b.height);
+		locked = true;
+	}
+
+	@Override
+	public String toString() {
+		return "RegionTracker{locked=" + locked + ",fullScans=" + fullScans + ",regionScans=" + regionScans
+				+ ",pixelsScanned=" + pixelsScanned + "}";
+	}
+
+}
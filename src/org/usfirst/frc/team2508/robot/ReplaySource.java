@@ -0,0 +1,113 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * FrameSource that plays back a FrameRecorder ring file in place of the
+ * camera, oldest frame first. In real time mode frames are released with the
+ * same spacing they were captured with; otherwise as fast as the pipeline
+ * takes them.
+ */
+public class ReplaySource implements FrameSource {
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer map;
+	private final VisionBackend backend;
+	private final int slots;
+	private final int slotSize;
+	private final long first;
+	private final long end;
+
+	private boolean realTime;
+	private boolean loop;
+
+	// Only touched by the capture thread
+	private long next;
+	private long startTime; // wall clock when the first frame of this pass was played
+	private long startTimestamp; // and when it was captured
+	long lastTimestamp;
+
+	public ReplaySource(File path, VisionBackend backend, boolean realTime, boolean loop) throws IOException {
+		this.backend = backend;
+		this.realTime = realTime;
+		this.loop = loop;
+
+		file = new RandomAccessFile(path, "r");
+		map = file.getChannel().map(MapMode.READ_ONLY, 0, file.length());
+		map.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (map.getLong(0) != FrameRecorder.MAGIC || map.getInt(FrameRecorder.VERSION_AT) != FrameRecorder.VERSION)
+			throw new IOException(path + " is not a frame recording");
+
+		slots = map.getInt(FrameRecorder.SLOTS_AT);
+		slotSize = map.getInt(FrameRecorder.SLOT_SIZE_AT);
+		end = map.getLong(FrameRecorder.WRITTEN_AT);
+		first = Math.max(0, end - slots);
+		next = first;
+	}
+
+	public int getFrameCount() {
+		return (int) (end - first);
+	}
+
+	public boolean isFinished() {
+		return !loop && next >= end;
+	}
+
+	public void setRealTime(boolean realTime) {
+		this.realTime = realTime;
+	}
+
+	public void setLoop(boolean loop) {
+		this.loop = loop;
+	}
+
+	public boolean grab(Frame frame) {
+		if (next >= end) {
+			if (!loop || end == first) {
+				// Nothing more to play; don't let the capture stage spin
+				LockSupport.parkNanos(100000000L);
+				return false;
+			}
+			next = first;
+			startTime = 0;
+		}
+
+		int base = FrameRecorder.HEADER + (int) (next % slots) * slotSize;
+		if (map.getLong(base + FrameRecorder.SEQUENCE_AT) != next) {
+			next++; // torn or never finished
+			return false;
+		}
+		long timestamp = map.getLong(base + FrameRecorder.TIMESTAMP_AT);
+		int width = map.getInt(base + FrameRecorder.WIDTH_AT);
+		int height = map.getInt(base + FrameRecorder.HEIGHT_AT);
+		next++;
+
+		if (realTime) {
+			if (startTime == 0) {
+				startTime = System.nanoTime();
+				startTimestamp = timestamp;
+			}
+			long wait;
+			while ((wait = startTime + (timestamp - startTimestamp) - System.nanoTime()) > 0)
+				LockSupport.parkNanos(wait);
+		}
+
+		map.position(base + FrameRecorder.SLOT_HEADER);
+		if (!backend.writePixels(frame, map, width, height))
+			return false;
+		lastTimestamp = timestamp;
+		return true;
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+
+}
@@ -1,16 +1,11 @@
 package org.usfirst.frc.team2508.robot;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.Date;
-import java.util.List;
 
 import com.ni.vision.NIVision;
-import com.ni.vision.NIVision.ColorMode;
 import com.ni.vision.NIVision.IMAQdxCameraControlMode;
-import com.ni.vision.NIVision.Image;
-import com.ni.vision.NIVision.ImageType;
-import com.ni.vision.NIVision.MeasurementType;
-import com.ni.vision.NIVision.Range;
 import com.ni.vision.VisionException;
 
 import edu.wpi.first.wpilibj.CameraServer;
@@ -26,7 +21,6 @@ import edu.wpi.first.wpilibj.SampleRobot;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Talon;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class Robot extends SampleRobot {
 
@@ -42,16 +36,18 @@ public class Robot extends SampleRobot {
 	Talon leftArm = new Talon(5);
 	Talon rightArm = new Talon(6);
 	DigitalInput liftHome = new DigitalInput(2);
-	Thread thread = new Thread();
+	ActionEngine actions = new ActionEngine();
+	LimitSwitchService limits = new LimitSwitchService();
+	LiftController lifter = new LiftController(lift, encoder, 200);
+	boolean liftManual; // bumpers held on the last pass
 
 	// Camera
 	CameraServer camera = CameraServer.getInstance();
-	Image image = null;
+	VisionPipeline vision = new VisionPipeline(new NIVisionBackend());
 	int session = 0;
 
 	// System
 	boolean armsIntake = true;
-	LiftState liftState = LiftState.GROUND;
 	Date clampTime = new Date();
 	Date lastSolenoidEnable = new Date();
 
@@ -62,26 +58,128 @@ public class Robot extends SampleRobot {
 	double rotationSpeed = 0.3; // multiplier for rotation speed
 	double wheelCircumference = 5.0; // circumference in meters of encoded
 										// wheels
+	boolean driveEncoders = false; // wheel encoders wired on DIO 3-10
+	double countsPerRevolution = 360; // wheel encoder counts per turn
+	double trackWidth = 0.55; // meters between left and right wheels
+	double wheelBase = 0.50; // meters between front and rear wheels
+	double odometryRate = 200; // pose samples per second
 	int encoderValue = 0;
 	int robotState;
 	boolean cameraPlugged = true;
+	boolean recordVision = false; // keep the last frames in a replay file
+	double visionTimeout = 0.5; // seconds before a vision result is stale
+	double visionHorizon = 0.2; // max seconds to predict a target ahead
+	double homingTimeout = 4.0; // seconds to find liftHome before giving up
+	double cancelTimeout = 0.5; // seconds for cancelled actions to clean up
+	double loopRate = 100; // teleop loop cycles per second
+	boolean logMatch = true; // log every teleop iteration for later
+	int matchLogsKept = 10; // boots whose logs stay on the robot, ~6 MB each
+	MatchLog matchLog;
+	Odometry odometry; // null without driveEncoders
+	double[] pose = new double[3]; // x, y, heading; dashboard only
+
+	// Teleop loop
+	LoopScheduler loop = new LoopScheduler(loopRate);
+	SubsystemScheduler subsystems;
+	double xMovement; // last drive command
+	double yMovement;
+	double rotation;
+
+	// Telemetry, sent off the calling thread and only when changed
+	Telemetry telemetry = new Telemetry(10); // flushes per second
+	int autoStateSlot = telemetry.number("Auto State: ", 0);
+	int autoTimeoutsSlot = telemetry.number("Auto Timeouts", 0);
+	int rightStickXSlot = telemetry.number("Right Stick X: ", 0.01);
+	int leftStickYSlot = telemetry.number("Left Stick Y: ", 0.01);
+	int rightStickYSlot = telemetry.number("Right Stick Y: ", 0.01);
+	int speedFactorSlot = telemetry.number("Speed Factor: ", 0.001);
+	int rotationFactorSlot = telemetry.number("Rotation Factor: ", 0.001);
+	int relayLightSlot = telemetry.bool("Relay Light Status: ");
+	int encoderSlot = telemetry.number("Encoder: ", 0);
+	int liftStateSlot = telemetry.number("Lift State", 0);
+	int liftHomedSlot = telemetry.bool("Lift Homed");
+	int overrunsSlot = telemetry.number("Loop Overruns", 0);
+	int jitterSlot = telemetry.number("Loop Jitter ms", 0.05);
+	int maxJitterSlot = telemetry.number("Loop Max Jitter ms", 0.05);
+	int targetsSlot = telemetry.number("Targets", 0);
+	int pairsSlot = telemetry.number("Pairs", 0);
+	int pairsCappedSlot = telemetry.number("Pairs Capped", 0);
+	int staleSlot = telemetry.bool("Vision Stale");
+	int angleSlot = telemetry.number("Angle", 0.1);
+	int calibratedSlot = telemetry.bool("Angle Calibrated");
+	int rangeSlot = telemetry.number("Range", 0.01);
+	int deferredSlot = telemetry.number("Vision Deferred", 0);
+	int poseXSlot = telemetry.number("Pose X", 0.01);
+	int poseYSlot = telemetry.number("Pose Y", 0.01);
+	int headingSlot = telemetry.number("Heading", 0.5);
+	int noCameraMessage = telemetry.message("camera not plugged in");
+	int foundHomeMessage = telemetry.message("ET FOUND HOME!!!");
+	int lostHomeMessage = telemetry.message("ET can't find home, stopped the lift");
+	int stuckActionMessage = telemetry.message("an action ignored cancel, starting teleop anyway");
 
 	// -------------------------------------------------------------
 	// Contructor for Robot
 	// -------------------------------------------------------------
 	public Robot() {
 		try {
-			image = NIVision.imaqCreateImage(NIVision.ImageType.IMAGE_RGB, 0);
-
 			session = NIVision.IMAQdxOpenCamera("cam1",
 					IMAQdxCameraControlMode.CameraControlModeListener);
 			NIVision.IMAQdxConfigureGrab(session);
 			NIVision.IMAQdxStartAcquisition(session);
+
+			vision.setFilter(cameraFilter);
+			if (recordVision) {
+				try {
+					vision.setRecorder(new FrameRecorder(new File(
+							"/home/lvuser/vision.rec"), 150, 320, 240));
+				} catch (IOException e) {
+					System.out.println("can't record vision: " + e.getMessage());
+				}
+			}
+			vision.start(new CameraSource(session), camera);
 		} catch (VisionException vi) {
-			System.out.println("camera not plugged in");
+			telemetry.log(noCameraMessage);
 			cameraPlugged = false;
 		}
 
+		// Load vision calibration if one has been deployed
+		File calibration = new File("/home/lvuser/vision.cal");
+		if (calibration.exists()) {
+			try {
+				AngleEstimator.getInstance().load(calibration);
+			} catch (IOException e) {
+				System.out.println("bad vision calibration: " + e.getMessage());
+			}
+		}
+
+		// Ten minutes of teleop iterations, in a new file every boot
+		if (logMatch) {
+			try {
+				matchLog = new MatchLog(MatchLog.nextFile(new File(
+						"/home/lvuser"), matchLogsKept), (int) (loopRate * 600));
+			} catch (IOException e) {
+				System.out.println("can't log match: " + e.getMessage());
+			}
+		}
+
+		telemetry.start();
+		subsystems = new SubsystemScheduler(telemetry, loopRate);
+		addSubsystems();
+
+		// liftHome reads false once the lift is down
+		limits.register(liftHome, true);
+		lifter.useHomeSwitch(limits, liftHome);
+		lifter.homingTimeout = homingTimeout;
+		lifter.start();
+
+		if (driveEncoders) {
+			odometry = new Odometry(new Encoder(3, 4), new Encoder(5, 6),
+					new Encoder(7, 8), new Encoder(9, 10), wheelCircumference
+							/ countsPerRevolution, trackWidth, wheelBase,
+					odometryRate);
+			odometry.start();
+		}
+
 		// Setup chassis
 		chassis.setInvertedMotor(MotorType.kFrontRight, true);
 		chassis.setInvertedMotor(MotorType.kRearLeft, true);
@@ -96,313 +194,357 @@ public class Robot extends SampleRobot {
 		chassis.setSafetyEnabled(false);
 		autoRun = true;
 		robotState = -1;
-		SmartDashboard.putNumber("Auto State: ", robotState);
-
-		if (isAutonomous() && isEnabled()) {
-			switch (robotState) { // Code will run through difference
-									// "states" according to each case
-			case -1:
-				robotState = 0;
-				SmartDashboard.putNumber("Auto State: ", robotState);
-				// strafe(.3, 3, 1.5);
-				// rotate(.7, 3, 0);
-				eTPhoneHome();
-				toggleClamp();
-				liftUp(4.5);
-				toggleClamp();
-				eTPhoneHome();
-				robotState = 10;
-			case 10:
-				SmartDashboard.putNumber("Auto State: ", robotState);
-				Timer.delay(2);
-				robotState = 20;
-			case 20:
-				SmartDashboard.putNumber("Auto State: ", robotState);
-				Timer.delay(2);
-				robotState = 30;
-			case 30:
-				SmartDashboard.putNumber("Auto State: ", robotState);
-				Timer.delay(2);
-				robotState = 40;
-			case 40:
-				SmartDashboard.putNumber("Auto State: ", robotState);
-				Timer.delay(2);
-				robotState = 50;
-				break;
-			}
-
+		telemetry.set(autoStateSlot, robotState);
+
+		// States advance on the loop tick; nothing here waits on the robot
+		AutoRoutine routine = buildAutonomous();
+		if (odometry != null)
+			odometry.reset(0, 0, 0);
+		loop.start();
+		routine.start(System.nanoTime());
+		while (isAutonomous() && isEnabled() && !routine.isFinished()) {
+			routine.tick(System.nanoTime());
+			robotState = routine.isFinished() ? 50 : routine.getStateId();
+			telemetry.set(autoStateSlot, robotState);
+			loop.waitForNextCycle();
 		}
+		routine.stop();
+		telemetry.set(autoTimeoutsSlot, routine.timeouts);
+	}
 
+	// Home, grab, lift, let go, home again; each step waits for the last
+	AutoRoutine buildAutonomous() {
+		AutoRoutine routine = new AutoRoutine();
+		// routine.then(AutoState.action(5, "Strafe", 4, actions, strafeAction(.3, 3)));
+		// routine.then(AutoState.action(6, "Rotate", 4, actions, rotateAction(.7, 3)));
+		routine.then(AutoState.action(0, "Home", homingTimeout + 1, actions, eTPhoneHomeAction()));
+		routine.then(AutoState.action(10, "Grab", 1, actions, toggleClampAction()));
+		routine.then(AutoState.action(20, "Lift", 3, actions, liftToAction(1, 3)));
+		routine.then(AutoState.action(30, "Release", 1, actions, toggleClampAction()));
+		routine.then(AutoState.action(40, "Home", homingTimeout + 1, actions, eTPhoneHomeAction()));
+		return routine;
 	}
 
 	// -------------------------------------------------------------
 	// Teleop Mode
 	// -------------------------------------------------------------
 	public void operatorControl() {
+		// Nothing left over from autonomous, cleanup included
+		if (!actions.cancelAll(cancelTimeout))
+			telemetry.log(stuckActionMessage);
 		chassis.setSafetyEnabled(true);
-		encoder.reset();
+		lifter.hold();
 		compressor.setClosedLoopControl(false);
 		pneumatic0.set(false);
 		pneumatic1.set(true);
 
-		// Arm Variables
-		double currentSpeed = leftArm.get();
-		double newSpeed = currentSpeed;
-
-		// Driving Variables
-		double xMovement;
-		double yMovement;
-		double rotation;
+		loop.start();
+		subsystems.start(System.nanoTime());
 
 		while (isOperatorControl() && isEnabled()) {
-			// -------------------------------------------------------------
-			// Lift
-			// -------------------------------------------------------------
-			// Measures the number of rotations of a wheel.
-			// getRaw() of 2000 is approximately one rotation
-			{
-
-				/*
-				 * if (liftState == LiftState.GROUND) {
-				 * 
-				 * }
-				 * 
-				 * if (gamepad.getFirstPressY()) { if (Math.abs(encoderValue) >=
-				 * 1940) { talon4.set(0); }
-				 * 
-				 * if (gamepad.getFirstPressY()) { encoder.reset();
-				 * lift.set(0.3); }
-				 */
-			}
+			subsystems.run(loop.getDeadline());
+			vision.getStream().reportLoop(loop.busy);
+			loop.waitForNextCycle();
+		}
+	}
 
-			// -------------------------------------------------------------
-			// Arms
-			// -------------------------------------------------------------
-			{
-				currentSpeed = leftArm.get();
-				newSpeed = currentSpeed;
-
-				if (gamepad.getFirstPressX()) {
-					if (currentSpeed == 0)
-						newSpeed = 0.5;
-					else
-						newSpeed = 0;
-				}
+	// -------------------------------------------------------------
+	// Teleop subsystems, run by the scheduler in this order
+	// -------------------------------------------------------------
+	void addSubsystems() {
+		int critical = SubsystemScheduler.CRITICAL;
+		subsystems.add("Arms", loopRate, critical, new Runnable() {
+			public void run() {
+				arms();
+			}
+		});
+		subsystems.add("Pneumatic", loopRate, critical, new Runnable() {
+			public void run() {
+				pneumatics();
+			}
+		});
+		subsystems.add("Lift", loopRate, critical, new Runnable() {
+			public void run() {
+				liftControl();
+			}
+		});
+		subsystems.add("Drive", loopRate, critical, new Runnable() {
+			public void run() {
+				drive();
+			}
+		});
+		subsystems.add("Light Switch", loopRate, critical, new Runnable() {
+			public void run() {
+				lightSwitch();
+			}
+		});
+		subsystems.add("Compressor", loopRate, critical, new Runnable() {
+			public void run() {
+				compressorControl();
+			}
+		});
+		// Button edges are only seen by units that ran before this
+		subsystems.add("Gamepad", loopRate, critical, new Runnable() {
+			public void run() {
+				gamepad.updatePrevButtonStates();
+			}
+		});
+		subsystems.add("Log", loopRate, 1, new Runnable() {
+			public void run() {
+				logIteration();
+			}
+		});
+		subsystems.add("Dashboard", 10, 2, new Runnable() {
+			public void run() {
+				dashboard();
+			}
+		});
+		subsystems.add("Vision", 0, 3, new Runnable() {
+			public void run() {
+				visionResults();
+			}
+		});
+	}
 
-				if (gamepad.getFirstPressA())
-					armsIntake = !armsIntake;
+	// -------------------------------------------------------------
+	// Arms
+	// -------------------------------------------------------------
+	void arms() {
+		double currentSpeed = leftArm.get();
+		double newSpeed = currentSpeed;
 
-				if (!armsIntake)
-					newSpeed = -newSpeed;
+		if (gamepad.getFirstPressX()) {
+			if (currentSpeed == 0)
+				newSpeed = 0.5;
+			else
+				newSpeed = 0;
+		}
 
-				if (currentSpeed != newSpeed) {
-					leftArm.set(newSpeed);
-					rightArm.set(-newSpeed);
-				}
-			}
+		if (gamepad.getFirstPressA())
+			armsIntake = !armsIntake;
 
-			// -------------------------------------------------------------
-			// Pneumatic Piston Control Using Solenoid
-			// -------------------------------------------------------------
-			// Using a 2-way solenoid, in order for pneumatic to extend, pneumatic0
-			// must be open (set to true) and pneumatic1 must be closed (set to
-			// false)
-			// Vice-versa to retract pneumatic piston.
-			if (true) {
+		if (!armsIntake)
+			newSpeed = -newSpeed;
 
-				if (gamepad.getFirstPressY() && pneumatic1.get()) {
-					pneumatic0.set(true);
-					pneumatic1.set(false);
-				} else if (gamepad.getFirstPressY() && pneumatic0.get()) {
-					pneumatic0.set(false);
-					pneumatic1.set(true);
-				}
-			}
+		if (currentSpeed != newSpeed) {
+			leftArm.set(newSpeed);
+			rightArm.set(-newSpeed);
+		}
+	}
 
-			// -------------------------------------------------------------
-			// Drive Speed & Rotation Factor
-			// -------------------------------------------------------------
-			{
-				// Pressing 'LT' on gamePad decreases speedFactor by 0.1
-				// Pressing 'RT' on gamePad increases speedFactor by 0.1
-
-				if (gamepad.getFirstPressLT())
-					speedFactor -= 0.1;
-				if (gamepad.getFirstPressRT())
-					speedFactor += 0.1;
-
-				// Pressing
-				if (gamepad.getFirstPressLeftStickPress())
-					rotationSpeed -= 0.1;
-				if (gamepad.getFirstPressRightStickPress())
-					rotationSpeed += 0.1;
-
-				// Keep factor between 0.3 and 1
-				speedFactor = Math.max(0.1, Math.min(1, speedFactor));
-				rotationSpeed = Math.max(0.2, Math.min(1, rotationSpeed));
-			}
+	// -------------------------------------------------------------
+	// Pneumatic Piston Control Using Solenoid
+	// -------------------------------------------------------------
+	// Using a 2-way solenoid, in order for pneumatic to extend, pneumatic0
+	// must be open (set to true) and pneumatic1 must be closed (set to
+	// false)
+	// Vice-versa to retract pneumatic piston.
+	void pneumatics() {
+		if (gamepad.getFirstPressY() && pneumatic1.get()) {
+			pneumatic0.set(true);
+			pneumatic1.set(false);
+		} else if (gamepad.getFirstPressY() && pneumatic0.get()) {
+			pneumatic0.set(false);
+			pneumatic1.set(true);
+		}
+	}
 
-			// -------------------------------------------------------------
-			// Lifting arm
-			// -------------------------------------------------------------
-
-			{
-				if (gamepad.getButtonRB())
-					lift.set(0.9);
-				else if (gamepad.getButtonLB())
-					lift.set(-0.9);
-				else
-					lift.set(0);
-			}
+	// -------------------------------------------------------------
+	// Lifting arm
+	// -------------------------------------------------------------
+	// Measures the number of rotations of a wheel.
+	// getRaw() of 2000 is approximately one rotation
+	// LiftController does the driving; the bumpers move it by hand,
+	// Start and Back step through the tote presets (Back at the bottom
+	// homes it on liftHome).
+	void liftControl() {
+
+		/*
+		 * if (liftState == LiftState.GROUND) {
+		 * 
+		 * }
+		 * 
+		 * if (gamepad.getFirstPressY()) { if (Math.abs(encoderValue) >=
+		 * 1940) { talon4.set(0); }
+		 * 
+		 * if (gamepad.getFirstPressY()) { encoder.reset();
+		 * lift.set(0.3); }
+		 */
+
+		if (gamepad.getButtonRB()) {
+			lifter.setManual(0.9);
+			liftManual = true;
+		} else if (gamepad.getButtonLB()) {
+			lifter.setManual(-0.9);
+			liftManual = true;
+		} else if (liftManual) {
+			lifter.hold();
+			liftManual = false;
+		}
 
-			// -------------------------------------------------------------
-			// Driving tankDrive or mecanumDrive
-			// -------------------------------------------------------------
-			{
-				// gamePad grabs Y value of thumbstick and multiplies by
-				// speedFactor to get leftSpeed and rightSpeed
-				xMovement = gamepad.getLeftStickX() * speedFactor;
-				yMovement = gamepad.getLeftStickY() * speedFactor;
-				rotation = gamepad.getRightStickX() * rotationSpeed;
-
-				// Tank drive at modified speed
-				// chassis.tankDrive(leftSpeed, rightSpeed);
-
-				// Mecanum drive at modified speed
-				// 3rd parameter specifies rate of rotation
-				chassis.mecanumDrive_Cartesian(xMovement, yMovement, rotation,
-						0);
-			}
+		if (gamepad.getFirstPressStart())
+			lifter.setPreset(lifter.getPreset() + 1);
+		if (gamepad.getFirstPressBack()) {
+			if (lifter.getPreset() == 0)
+				lifter.home();
+			else
+				lifter.setPreset(lifter.getPreset() - 1);
+		}
+	}
 
-			// -------------------------------------------------------------
-			// Light Switch
-			// -------------------------------------------------------------
-			{
-				if (gamepad.getFirstPressB()) {
-					if (relayLight.get() == Value.kOn)
-						relayLight.set(Value.kOff);
-					else
-						relayLight.set(Value.kOn);
-				}
-			}
+	// -------------------------------------------------------------
+	// Drive Speed & Rotation Factor, then mecanumDrive
+	// -------------------------------------------------------------
+	void drive() {
+		// Pressing 'LT' on gamePad decreases speedFactor by 0.1
+		// Pressing 'RT' on gamePad increases speedFactor by 0.1
+
+		if (gamepad.getFirstPressLT())
+			speedFactor -= 0.1;
+		if (gamepad.getFirstPressRT())
+			speedFactor += 0.1;
+
+		// Pressing
+		if (gamepad.getFirstPressLeftStickPress())
+			rotationSpeed -= 0.1;
+		if (gamepad.getFirstPressRightStickPress())
+			rotationSpeed += 0.1;
+
+		// Keep factor between 0.3 and 1
+		speedFactor = Math.max(0.1, Math.min(1, speedFactor));
+		rotationSpeed = Math.max(0.2, Math.min(1, rotationSpeed));
+
+		// gamePad grabs Y value of thumbstick and multiplies by
+		// speedFactor to get leftSpeed and rightSpeed
+		xMovement = gamepad.getLeftStickX() * speedFactor;
+		yMovement = gamepad.getLeftStickY() * speedFactor;
+		rotation = gamepad.getRightStickX() * rotationSpeed;
+
+		// Tank drive at modified speed
+		// chassis.tankDrive(leftSpeed, rightSpeed);
+
+		// Mecanum drive at modified speed
+		// 3rd parameter specifies rate of rotation
+		chassis.mecanumDrive_Cartesian(xMovement, yMovement, rotation, 0);
+	}
 
-			// -------------------------------------------------------------
-			// Compressor
-			// -------------------------------------------------------------
-			{
-				if (gamepad.getFirstPressY()) {
-					if (compressor.enabled())
-						compressor.start();
-					else
-						compressor.stop();
-				}
-			}
+	// -------------------------------------------------------------
+	// Light Switch
+	// -------------------------------------------------------------
+	void lightSwitch() {
+		if (gamepad.getFirstPressB()) {
+			if (relayLight.get() == Value.kOn)
+				relayLight.set(Value.kOff);
+			else
+				relayLight.set(Value.kOn);
+		}
+	}
 
-			// -------------------------------------------------------------
-			// Smart Dashboard
-			// -------------------------------------------------------------
-			{
-				SmartDashboard.putNumber("Right Stick X: ",
-						gamepad.getRightStickX());
-				SmartDashboard.putNumber("Left Stick Y: ",
-						gamepad.getLeftStickY());
-				SmartDashboard.putNumber("Right Stick Y: ",
-						gamepad.getRightStickY());
-				SmartDashboard.putNumber("Speed Factor: ", speedFactor);
-				SmartDashboard.putNumber("Rotation Factor: ", rotationSpeed);
-				// SmartDashboard.putBoolean("Compressor",
-				// compressor.enabled());
-				// SmartDashboard.putBoolean("Solenoid Status", pneumatic0.get()
-				// && !pneumatic1.get());
-				SmartDashboard.putBoolean("Relay Light Status: ",
-						relayLight.get() == Value.kOn);
-				SmartDashboard.putNumber("Encoder: ", encoderValue);
-			}
+	// -------------------------------------------------------------
+	// Compressor
+	// -------------------------------------------------------------
+	void compressorControl() {
+		if (gamepad.getFirstPressY()) {
+			if (compressor.enabled())
+				compressor.start();
+			else
+				compressor.stop();
+		}
+	}
 
-			// -------------------------------------------------------------
-			// Image Processing
-			// -------------------------------------------------------------
-			//
-			{
-				// Write new data to image variable.
-				if (cameraPlugged) {
-					NIVision.IMAQdxGrab(session, image, 1);
-				}
-				if (cameraFilter) {
-
-					// Draw a sphere (for testing)
-					// NIVision.imaqDrawShapeOnImage(image, image, new
-					// Rect(10,10,100,100), DrawMode.PAINT_VALUE,
-					// ShapeMode.SHAPE_OVAL, 5.0f);
-
-					Range red = new Range(120, 250);
-					Range green = new Range(170, 255);
-					Range blue = new Range(235, 255);
-
-					Image binary = NIVision.imaqCreateImage(ImageType.IMAGE_U8,
-							100);
-
-					NIVision.imaqColorThreshold(binary, image, 255,
-							ColorMode.RGB, red, green, blue);
-
-					List<Target> targets = new ArrayList<Target>();
-
-					int particles = NIVision.imaqCountParticles(binary, 0);
-
-					for (int i = 0; i < particles; i++) {
-						double x = NIVision.imaqMeasureParticle(binary, i, 0,
-								MeasurementType.MT_BOUNDING_RECT_LEFT);
-						double y = NIVision.imaqMeasureParticle(binary, i, 0,
-								MeasurementType.MT_BOUNDING_RECT_TOP);
-						double area = NIVision.imaqMeasureParticle(binary, i,
-								0, MeasurementType.MT_AREA);
-						double width = NIVision.imaqMeasureParticle(binary, i,
-								0, MeasurementType.MT_BOUNDING_RECT_WIDTH);
-						double height = NIVision.imaqMeasureParticle(binary, i,
-								0, MeasurementType.MT_BOUNDING_RECT_HEIGHT);
-
-						if (height > 3 && width > 50)
-							targets.add(new Target(x, y, width, height, area));
-					}
-
-					List<Pair> pairs = new ArrayList<Pair>();
-
-					for (Target target : targets) {
-						for (Target test : targets) {
-							if (target == test)
-								continue;
-
-							if (test.isPair(target) && !pairs.contains(test)) {
-								pairs.add(new Pair(target, test));
-								break;
-							}
-						}
-					}
-
-					SmartDashboard.putNumber("Targets", targets.size());
-					SmartDashboard.putNumber("Pairs", pairs.size());
-
-					for (Pair pair : pairs) {
-						pair.a.fill(image);
-						pair.b.fill(image);
-						SmartDashboard.putNumber("Angle", pair.getAngle());
-						break;
-					}
-
-					// Send image to SmartDashboard
-					camera.setImage(binary);
-				} else {
-					if (cameraPlugged)
-						camera.setImage(image);
-				}
-			}
-			// End of Image Processing
+	// -------------------------------------------------------------
+	// Smart Dashboard
+	// -------------------------------------------------------------
+	void dashboard() {
+		telemetry.set(rightStickXSlot, gamepad.getRightStickX());
+		telemetry.set(leftStickYSlot, gamepad.getLeftStickY());
+		telemetry.set(rightStickYSlot, gamepad.getRightStickY());
+		telemetry.set(speedFactorSlot, speedFactor);
+		telemetry.set(rotationFactorSlot, rotationSpeed);
+		// SmartDashboard.putBoolean("Compressor",
+		// compressor.enabled());
+		// SmartDashboard.putBoolean("Solenoid Status", pneumatic0.get()
+		// && !pneumatic1.get());
+		telemetry.set(relayLightSlot, relayLight.get() == Value.kOn);
+		encoderValue = lifter.getPosition();
+		telemetry.set(encoderSlot, encoderValue);
+		telemetry.set(liftStateSlot, lifter.getState().ordinal());
+		telemetry.set(liftHomedSlot, lifter.isHomed());
+		telemetry.set(overrunsSlot, loop.overruns);
+		telemetry.set(jitterSlot, loop.getMeanJitter() * 1000);
+		telemetry.set(maxJitterSlot, loop.maxJitter * 1000);
+		telemetry.set(deferredSlot, subsystems.getDeferred("Vision"));
+		if (odometry != null && odometry.getLatest(pose) != 0) {
+			telemetry.set(poseXSlot, pose[0]);
+			telemetry.set(poseYSlot, pose[1]);
+			telemetry.set(headingSlot, Math.toDegrees(pose[2]));
+		}
+	}
 
-			gamepad.updatePrevButtonStates();
-			Timer.delay(0.1);
+	// -------------------------------------------------------------
+	// Image Processing
+	// -------------------------------------------------------------
+	// Frames are grabbed, filtered and streamed by VisionPipeline on
+	// its own threads; only read the latest finished result here.
+	void visionResults() {
+		VisionResult result = vision.getLatest();
+		TrackState track = vision.getPairTracker().getState();
+		long now = System.nanoTime();
+		boolean stale = result.isStale(visionTimeout);
+
+		telemetry.set(targetsSlot, result.targets);
+		telemetry.set(pairsSlot, result.pairs);
+		telemetry.set(pairsCappedSlot, vision.getPairing().cappedFrames);
+		telemetry.set(staleSlot, stale);
+		if (track.isTracking(now, visionTimeout))
+			telemetry.set(angleSlot, track.angleAt(now, visionHorizon));
+		if (result.hasPair() && !stale) {
+			telemetry.set(calibratedSlot, result.isCalibrated());
+			if (!Double.isNaN(result.getRange()))
+				telemetry.set(rangeSlot, result.getRange());
 		}
 	}
-	
+
+	// -------------------------------------------------------------
+	// Match Log
+	// -------------------------------------------------------------
+	void logIteration() {
+		if (matchLog == null)
+			return;
+
+		int flags = 0;
+		if (pneumatic0.get())
+			flags |= MatchLog.SOLENOID_0;
+		if (pneumatic1.get())
+			flags |= MatchLog.SOLENOID_1;
+		if (relayLight.get() == Value.kOn)
+			flags |= MatchLog.RELAY_LIGHT;
+		if (limits.isPressed(liftHome))
+			flags |= MatchLog.LIFT_HOME;
+		if (compressor.enabled())
+			flags |= MatchLog.COMPRESSOR;
+
+		VisionResult result = vision.getLatest();
+		matchLog.begin(System.nanoTime());
+		matchLog.gamepad(gamepad.getLeftStickX(), gamepad.getLeftStickY(),
+				gamepad.getRightStickX(), gamepad.getRightStickY(),
+				gamepad.getPrevButtonStates());
+		matchLog.drive(xMovement, yMovement, rotation);
+		matchLog.motors(lifter.getOutput(), leftArm.get(), rightArm.get());
+		matchLog.state(lifter.getPosition(), lifter.getState(), flags);
+		matchLog.vision(result, result.isStale(visionTimeout));
+		matchLog.busy(loop.busy);
+		matchLog.commit();
+	}
+
+	// -------------------------------------------------------------
+	// Disabled Mode
+	// -------------------------------------------------------------
+	public void disabled() {
+		actions.cancelAll(cancelTimeout);
+		lifter.disable();
+	}
+
 	// -------------------------------------------------------------
 	// Test Mode
 	// -------------------------------------------------------------
@@ -412,38 +554,82 @@ public class Robot extends SampleRobot {
 	// -------------------------------------------------------------
 	// Autonomous methods for controlling robot
 	// -------------------------------------------------------------
-	public void liftUp(double time) {
+	public ActionHandle liftUp(double time) {
+		return actions.submit(liftUpAction(time));
+	}
+
+	public ActionHandle eTPhoneHome() {
+		return actions.submit(eTPhoneHomeAction());
+	}
+
+	public ActionHandle toggleClamp() {
+		return actions.submit(toggleClampAction());
+	}
+
+	public ActionHandle strafe(double speed, double time, double wait) {
+		ActionHandle handle = actions.submit(strafeAction(speed, time));
+		Timer.delay(wait);
+		return handle;
+	}
+
+	public ActionHandle rotate(double speed, double time, double wait) {
+		ActionHandle handle = actions.submit(rotateAction(speed, time));
+		Timer.delay(wait);
+		return handle;
+	}
+
+	// Actions for the methods above, to chain with ActionHandle.then()
+
+	Action liftUpAction(final double time) {
 		// Ex: lift(4.5, 4.5);
 		// speed is the rate it lifts (can be negative); average speed is |0.6|
 		// time is in seconds
-		thread = new Thread() {
-			public void run() {
-				lift.set(0.6);
-				Timer.delay(time);
-				lift.set(0);
+		return new Action("liftUp", Actuator.LIFT) {
+			protected void run(ActionHandle handle) throws InterruptedException {
+				try {
+					lifter.setManual(0.6);
+					handle.delay(time);
+				} finally {
+					lifter.hold();
+				}
 			}
 		};
-		thread.start();
+	}
 
+	Action liftToAction(final int totes, final double timeout) {
+		// Ex: liftTo(1, 3) raises the lift to one tote height on the
+		// encoder, done once it settles there or after 3 seconds
+		return new Action("liftTo", Actuator.LIFT) {
+			protected void run(ActionHandle handle) throws InterruptedException {
+				lifter.setPreset(totes);
+				lifter.awaitSettled(timeout);
+			}
+		};
 	}
 
-	public void eTPhoneHome() {
+	Action eTPhoneHomeAction() {
 		// Ex eTPhoneHome();
-		// Brings lift down until liftHome (DigitalInput) is toggled
-		thread = new Thread() {
-			public void run() {
-				while (liftHome.get())
-					lift.set(-0.6);
-				lift.set(0.0);
-				System.out.println("ET FOUND HOME!!!");
+		// Brings lift down until liftHome (DigitalInput) is toggled, or
+		// stops it after homingTimeout in case the switch has failed
+		return new Action("eTPhoneHome", Actuator.LIFT) {
+			protected void run(ActionHandle handle) throws InterruptedException {
+				boolean home = false;
+				try {
+					lifter.home();
+					home = limits.awaitPressed(liftHome, homingTimeout);
+				} finally {
+					// On success the controller zeroes and holds the bottom
+					if (!home)
+						lifter.disable();
+				}
+				telemetry.log(home ? foundHomeMessage : lostHomeMessage);
 			}
 		};
-		thread.start();
 	}
 
-	public void toggleClamp() {
-		thread = new Thread() {
-			public void run() {
+	Action toggleClampAction() {
+		return new Action("toggleClamp", Actuator.CLAMP) {
+			protected void run(ActionHandle handle) {
 				if (pneumatic1.get()) {
 					pneumatic0.set(true);
 					pneumatic1.set(false);
@@ -453,36 +639,39 @@ public class Robot extends SampleRobot {
 				}
 			}
 		};
-		thread.start();
 	}
-	
-	public void strafe(double speed, double time, double wait) {
+
+	Action strafeAction(final double speed, final double time) {
 		// Ex: chassis.stafe(0.4);
 		// Mecanum drive at modified speed and length of time
 		// 1st parameter specifies xMovement
-		new Thread() {
-			public void run() {
-				chassis.mecanumDrive_Cartesian(speed, 0, 0, 0);
-				Timer.delay(time);
-				chassis.mecanumDrive_Cartesian(0, 0, 0, 0);
+		return new Action("strafe", Actuator.DRIVE) {
+			protected void run(ActionHandle handle) throws InterruptedException {
+				try {
+					chassis.mecanumDrive_Cartesian(speed, 0, 0, 0);
+					handle.delay(time);
+				} finally {
+					chassis.mecanumDrive_Cartesian(0, 0, 0, 0);
+				}
 			}
-		}.start();
-		Timer.delay(wait);
+		};
 	}
 
-	public void rotate(double speed, double time, double wait) {
+	Action rotateAction(final double speed, final double time) {
 		// Ex: chassis.rotate (0.4);
 
 		// Mecanum drive at modified speed and length of time
 		// 3rd parameter specifies rate of rotation
-		new Thread() {
-			public void run() {
-				chassis.mecanumDrive_Cartesian(0, 0, speed * rotationSpeed, 0);
-				Timer.delay(time);
-				chassis.mecanumDrive_Cartesian(0, 0, 0, 0);
+		return new Action("rotate", Actuator.DRIVE) {
+			protected void run(ActionHandle handle) throws InterruptedException {
+				try {
+					chassis.mecanumDrive_Cartesian(0, 0, speed * rotationSpeed, 0);
+					handle.delay(time);
+				} finally {
+					chassis.mecanumDrive_Cartesian(0, 0, 0, 0);
+				}
 			}
-		}.start();
-		Timer.delay(wait);
+		};
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Decides which frames go to the CameraServer and at what size and JPEG
+ * quality, so streaming video never starves the control loop.
+ * <p>
+ * Settings move along a ladder of levels, from full rate, full size and
+ * best quality down to a slow, small, rough stream. After every frame sent,
+ * the controller compares the encode time against its share of the frame
+ * period, and the teleop loop's reported busy fraction against its limit.
+ * If either is over budget it drops a level; once both have been well under
+ * for a while it climbs back up. Frames that are not due are skipped, never
+ * waited for.
+ */
+public class StreamController {
+
+	// fps, scale divisor, JPEG quality; best first
+	static final int[][] LEVELS = {
+			{ 30, 1, 50 },
+			{ 30, 1, 30 },
+			{ 20, 2, 50 },
+			{ 15, 2, 30 },
+			{ 10, 4, 30 },
+			{ 5, 4, 20 } };
+
+	static final double SMOOTHING = 0.2; // weight of the newest load sample
+	static final double UPGRADE_LOAD = 0.5;
+	static final int UPGRADE_FRAMES = 30;
+
+	private volatile double maxFps = 30;
+	private volatile double encodeShare = 0.25; // of the frame period
+	private volatile double maxLoopBusy = 0.7; // of the loop period
+
+	private volatile int level = 0;
+	private volatile double loopBusy;
+	private double load;
+	private int calm; // frames in a row under UPGRADE_LOAD
+	private long lastSent;
+
+	// Statistics
+	volatile long framesSent;
+	volatile long framesSkipped;
+	volatile double encodeTime; // seconds, smoothed
+
+	/** Upper limit on the stream rate, whatever the level. */
+	public void setMaxFps(double fps) {
+		maxFps = fps;
+	}
+
+	/** Fraction of each frame period that encoding may use. */
+	public void setEncodeShare(double share) {
+		encodeShare = share;
+	}
+
+	/** Fraction of the control loop period above which the stream backs off. */
+	public void setMaxLoopBusy(double busy) {
+		maxLoopBusy = busy;
+	}
+
+	/** Reports the fraction of its period the last control loop iteration worked. */
+	public void reportLoop(double busy) {
+		loopBusy = busy;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public double getFps() {
+		return Math.min(maxFps, LEVELS[level][0]);
+	}
+
+	public int getScale() {
+		return LEVELS[level][1];
+	}
+
+	public int getQuality() {
+		return LEVELS[level][2];
+	}
+
+	/** True if a frame captured now should be streamed; otherwise counts a skip. */
+	public boolean shouldSend(long now) {
+		if (now - lastSent < 1e9 / getFps()) {
+			framesSkipped++;
+			return false;
+		}
+		lastSent = now;
+		return true;
+	}
+
+	/** Records how long the frame just sent took to hand to the CameraServer. */
+	public void sent(long encodeNanos) {
+		framesSent++;
+		double encode = encodeNanos / 1e9;
+		encodeTime += SMOOTHING * (encode - encodeTime);
+
+		double budget = encodeShare / getFps();
+		double sample = Math.max(encode / budget, loopBusy / maxLoopBusy);
+		load += SMOOTHING * (sample - load);
+
+		if (load > 1 && level < LEVELS.length - 1) {
+			level++;
+			load = 1;
+			calm = 0;
+		} else if (load < UPGRADE_LOAD && level > 0) {
+			if (++calm >= UPGRADE_FRAMES) {
+				level--;
+				calm = 0;
+			}
+		} else {
+			calm = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StreamController{level=" + level + ",fps=" + getFps() + ",scale=" + getScale() + ",quality="
+				+ getQuality() + ",sent=" + framesSent + ",skipped=" + framesSkipped + "}";
+	}
+
+}
@@ -0,0 +1,153 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs the robot's subsystems at their own rates from one fixed-rate loop.
+ * Each tick, every unit that is due runs in priority order (lowest number
+ * first, then in the order added). CRITICAL units always run when due.
+ * Any other unit runs only if its estimated cost still fits before the
+ * tick's deadline; otherwise it stays due and is tried again next tick. So
+ * slow, low-priority work is what gets late, never the safety-critical
+ * outputs.
+ * <p>
+ * A rate of 0 means "whenever there is time": the unit is due every tick
+ * and, not being critical, runs only in slack. A unit at the loop's rate or
+ * above runs every tick. Slower units are scheduled against the tick's
+ * start, rounded to the nearest tick, so loop jitter does not push them a
+ * tick late. Each unit is timed by a LoopProfiler under its name.
+ */
+public class SubsystemScheduler {
+
+	static final int CRITICAL = 0;
+	static final double PROFILE_INTERVAL = 1.0; // seconds between dashboard updates
+
+	private static class Unit {
+		final String name;
+		final long period; // nanoseconds, 0 for every tick
+		final int priority;
+		final Runnable task;
+		long next;
+		long estimate; // nanoseconds, rises at once and decays slowly
+		long runs;
+		long deferred;
+
+		Unit(String name, long period, int priority, Runnable task) {
+			this.name = name;
+			this.period = period;
+			this.priority = priority;
+			this.task = task;
+		}
+	}
+
+	private final Telemetry telemetry;
+	private final long tick; // loop period, nanoseconds
+	private final List<Unit> units = new ArrayList<Unit>();
+	private Unit[] order;
+	private LoopProfiler profiler;
+
+	/**
+	 * @param telemetry where the per-unit timings are published
+	 * @param loopRate ticks per second of the loop calling {@link #run(long)}
+	 */
+	public SubsystemScheduler(Telemetry telemetry, double loopRate) {
+		this.telemetry = telemetry;
+		this.tick = (long) (1e9 / loopRate);
+	}
+
+	/**
+	 * Adds a unit; only before {@link #start(long)}.
+	 * 
+	 * @param rate runs per second, or 0 for whenever there is time
+	 * @param priority CRITICAL, or larger for less important work
+	 */
+	public void add(String name, double rate, int priority, Runnable task) {
+		if (order != null)
+			throw new IllegalStateException("scheduler already started");
+		long period = rate > 0 ? (long) (1e9 / rate) : 0;
+		units.add(new Unit(name, period > tick ? period : 0, priority, task));
+	}
+
+	/** Makes every unit due at once. */
+	public void start(long now) {
+		if (order == null) {
+			order = units.toArray(new Unit[units.size()]);
+			Arrays.sort(order, new Comparator<Unit>() {
+				public int compare(Unit a, Unit b) {
+					return Integer.compare(a.priority, b.priority);
+				}
+			});
+			String[] names = new String[order.length];
+			for (int i = 0; i < order.length; i++)
+				names[i] = order[i].name;
+			profiler = new LoopProfiler(telemetry, PROFILE_INTERVAL, names);
+		}
+		for (Unit unit : order)
+			unit.next = now;
+	}
+
+	/**
+	 * Runs every unit that is due and fits.
+	 * 
+	 * @param deadline System.nanoTime() by which this tick should finish
+	 */
+	public void run(long deadline) {
+		long t = profiler.begin();
+		long now = t;
+		long due = now + tick / 2; // anything due before the middle of this tick
+		for (int i = 0; i < order.length; i++) {
+			Unit unit = order[i];
+			if (unit.period != 0 && due < unit.next)
+				continue;
+			if (unit.priority != CRITICAL && t + unit.estimate > deadline) {
+				unit.deferred++;
+				continue;
+			}
+
+			unit.task.run();
+			long start = t;
+			t = profiler.lap(i, t);
+			long cost = t - start;
+			unit.estimate = Math.max(cost, unit.estimate - (unit.estimate >> 3));
+			unit.runs++;
+
+			if (unit.period != 0 && (unit.next += unit.period) <= due)
+				unit.next = now + unit.period; // fell behind; don't run it back to back
+		}
+		profiler.publish(t);
+	}
+
+	public long getRuns(String name) {
+		Unit unit = find(name);
+		return unit == null ? 0 : unit.runs;
+	}
+
+	/** Times a unit was due but left for a later tick. */
+	public long getDeferred(String name) {
+		Unit unit = find(name);
+		return unit == null ? 0 : unit.deferred;
+	}
+
+	private Unit find(String name) {
+		for (Unit unit : units) {
+			if (unit.name.equals(name))
+				return unit;
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("SubsystemScheduler{");
+		for (Unit unit : units) {
+			if (s.length() > 19)
+				s.append(',');
+			s.append(unit.name).append("=").append(unit.runs).append('/').append(unit.deferred);
+		}
+		return s.append('}').toString();
+	}
+
+}
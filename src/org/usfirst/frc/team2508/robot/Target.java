@@ -1,13 +1,9 @@
 package org.usfirst.frc.team2508.robot;
 
-import com.ni.vision.NIVision;
-import com.ni.vision.NIVision.DrawMode;
-import com.ni.vision.NIVision.Image;
-import com.ni.vision.NIVision.Rect;
-import com.ni.vision.NIVision.ShapeMode;
-
 public class Target {
 
+	static final int PAIR_RANGE = 5; // max difference in y between a pair
+
 	double x;
 	double y;
 	double width;
@@ -22,17 +18,12 @@ public class Target {
 		this.area = area;
 	}
 
-	public void fill(Image image) {
-		Rect area = new Rect((int) y, (int) x, (int) height, (int) width);
-		NIVision.imaqDrawShapeOnImage(image, image, area, DrawMode.PAINT_VALUE, ShapeMode.SHAPE_RECT, 5);
-		
-		Rect pointer = new Rect((int) y, (int) x, 5, 5);
-		// NIVision.imaqDrawShapeOnImage(image, image, pointer, DrawMode.PAINT_VALUE, ShapeMode.SHAPE_OVAL, 5);
+	public void annotate(Overlay overlay) {
+		overlay.add(x, y, width, height);
 	}
 	
 	public boolean isPair(Target target) {
-		int range = 5;
-		return (target.y >= y - range) && (target.y <= y + range);
+		return (target.y >= y - PAIR_RANGE) && (target.y <= y + PAIR_RANGE);
 	}
 	
 	@Override
@@ -0,0 +1,117 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.Arrays;
+
+/**
+ * Reusable struct-of-arrays store for the particles measured in one frame.
+ * Row i is described by x[i], y[i], width[i], height[i] and area[i]; nothing
+ * is boxed, and the columns only grow when a frame has more particles than
+ * any frame before it.
+ */
+public class TargetBuffer {
+
+	double[] x;
+	double[] y;
+	double[] width;
+	double[] height;
+	double[] area;
+	int size;
+
+	public TargetBuffer() {
+		this(32);
+	}
+
+	public TargetBuffer(int capacity) {
+		x = new double[capacity];
+		y = new double[capacity];
+		width = new double[capacity];
+		height = new double[capacity];
+		area = new double[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return x.length;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/** Makes room for at least n rows, discarding the current contents. */
+	public void reset(int n) {
+		size = 0;
+		if (n > x.length) {
+			int capacity = Math.max(n, x.length * 2);
+			x = new double[capacity];
+			y = new double[capacity];
+			width = new double[capacity];
+			height = new double[capacity];
+			area = new double[capacity];
+		}
+	}
+
+	public void add(double x, double y, double width, double height, double area) {
+		if (size == this.x.length) {
+			int capacity = size * 2;
+			this.x = Arrays.copyOf(this.x, capacity);
+			this.y = Arrays.copyOf(this.y, capacity);
+			this.width = Arrays.copyOf(this.width, capacity);
+			this.height = Arrays.copyOf(this.height, capacity);
+			this.area = Arrays.copyOf(this.area, capacity);
+		}
+		set(size++, x, y, width, height, area);
+	}
+
+	void set(int i, double x, double y, double width, double height, double area) {
+		this.x[i] = x;
+		this.y[i] = y;
+		this.width[i] = width;
+		this.height[i] = height;
+		this.area[i] = area;
+	}
+
+	/**
+	 * Keeps only the rows taller than minHeight and wider than minWidth,
+	 * compacting them to the front in their original order.
+	 */
+	public void filter(double minHeight, double minWidth) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (height[i] > minHeight && width[i] > minWidth) {
+				if (kept != i)
+					set(kept, x[i], y[i], width[i], height[i], area[i]);
+				kept++;
+			}
+		}
+		size = kept;
+	}
+
+	/**
+	 * Converts rows measured on an image decimated by factor, whose origin
+	 * was (left, top) in the full image, into full image coordinates.
+	 */
+	public void rescale(int factor, int left, int top) {
+		for (int i = 0; i < size; i++) {
+			x[i] = left + x[i] * factor;
+			y[i] = top + y[i] * factor;
+			width[i] *= factor;
+			height[i] *= factor;
+			area[i] *= factor * factor;
+		}
+	}
+
+	/** Boxes row i into a Target. Only use this off the per-particle path. */
+	public Target get(int i) {
+		return new Target(x[i], y[i], width[i], height[i], area[i]);
+	}
+
+	@Override
+	public String toString() {
+		return "TargetBuffer{size=" + size + ",capacity=" + x.length + "}";
+	}
+
+}
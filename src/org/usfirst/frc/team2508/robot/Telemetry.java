@@ -0,0 +1,190 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Dashboard values and console messages, published off the calling thread.
+ * Each key or message is registered once for a slot number. Setting a slot
+ * or logging a message only writes a fixed-size record into the calling
+ * thread's own {@link TelemetryRing}, so hot loops never block on
+ * NetworkTables or console I/O; if that ring is full the record is dropped
+ * and counted under "Telemetry Dropped".
+ * <p>
+ * A consumer thread wakes at a fixed rate, drains every ring, prints the
+ * messages, and puts only the values that moved more than their epsilon
+ * since they were last sent, so NetworkTables traffic follows how much
+ * changes, not how fast the loops run. Keys are usually registered before
+ * {@link #start()}, but registering later is safe.
+ */
+public class Telemetry {
+
+	static final int MAX_SLOTS = 128; // Robot uses about 60 with the loop profile
+	static final int RING_SIZE = 1024; // records per producing thread
+
+	static final byte NUMBER = 0;
+	static final byte BOOLEAN = 1;
+	static final byte MESSAGE = 2;
+
+	private final String[] keys = new String[MAX_SLOTS];
+	private final byte[] kind = new byte[MAX_SLOTS];
+	private final double[] epsilon = new double[MAX_SLOTS];
+	private volatile int size;
+
+	// Consumer only
+	private final double[] latest = new double[MAX_SLOTS];
+	private final double[] sent = new double[MAX_SLOTS];
+	private long retiredDrops; // from rings of threads that have died
+
+	private final CopyOnWriteArrayList<TelemetryRing> rings = new CopyOnWriteArrayList<TelemetryRing>();
+	private final ThreadLocal<TelemetryRing> ring = new ThreadLocal<TelemetryRing>() {
+		protected TelemetryRing initialValue() {
+			TelemetryRing r = new TelemetryRing(Thread.currentThread(), RING_SIZE);
+			rings.add(r);
+			return r;
+		}
+	};
+
+	private final long interval;
+	private final int droppedSlot;
+	private volatile boolean running;
+	private Thread thread;
+
+	// Statistics
+	volatile long flushes;
+	volatile long puts;
+	volatile long dropped;
+
+	/** @param rate flushes per second */
+	public Telemetry(double rate) {
+		interval = (long) (1000 / rate);
+		Arrays.fill(latest, Double.NaN);
+		Arrays.fill(sent, Double.NaN);
+		droppedSlot = number("Telemetry Dropped", 0);
+	}
+
+	/**
+	 * Registers a number, sent once it differs from the last value sent by
+	 * more than epsilon.
+	 * 
+	 * @return the slot to set
+	 */
+	public int number(String key, double epsilon) {
+		return register(key, NUMBER, epsilon);
+	}
+
+	/** Registers a boolean, sent whenever it flips. */
+	public int bool(String key) {
+		return register(key, BOOLEAN, 0);
+	}
+
+	/** Registers a console message, printed every time it is logged. */
+	public int message(String text) {
+		return register(text, MESSAGE, 0);
+	}
+
+	private synchronized int register(String key, byte kind, double epsilon) {
+		for (int i = 0; i < size; i++) {
+			if (keys[i].equals(key) && this.kind[i] == kind)
+				return i;
+		}
+		if (size == MAX_SLOTS)
+			throw new IllegalStateException("too many telemetry keys");
+		int slot = size;
+		keys[slot] = key;
+		this.kind[slot] = kind;
+		this.epsilon[slot] = epsilon;
+		size = slot + 1;
+		return slot;
+	}
+
+	public void set(int slot, double value) {
+		ring.get().offer(slot, value);
+	}
+
+	public void set(int slot, boolean value) {
+		ring.get().offer(slot, value ? 1 : 0);
+	}
+
+	public void log(int slot) {
+		ring.get().offer(slot, Double.NaN);
+	}
+
+	/** Logs a message followed by a number. */
+	public void log(int slot, double value) {
+		ring.get().offer(slot, value);
+	}
+
+	/** Called by a ring while draining. */
+	void receive(int slot, double value) {
+		if (kind[slot] == MESSAGE)
+			System.out.println(Double.isNaN(value) ? keys[slot] : keys[slot] + " " + value);
+		else
+			latest[slot] = value;
+	}
+
+	/**
+	 * Drains every ring and puts what has changed enough since it was last
+	 * sent. Only one thread may flush; it is the consumer.
+	 */
+	public synchronized void flush() {
+		long drops = retiredDrops;
+		for (TelemetryRing r : rings) {
+			r.drain(this);
+			drops += r.dropped;
+			if (!r.owner.isAlive() && r.isEmpty()) {
+				rings.remove(r);
+				retiredDrops += r.dropped;
+			}
+		}
+		dropped = drops;
+		latest[droppedSlot] = drops;
+
+		for (int i = 0; i < size; i++) {
+			double value = latest[i];
+			if (kind[i] == MESSAGE || Double.isNaN(value))
+				continue; // not a value, or never set
+			double last = sent[i];
+			if (!Double.isNaN(last) && Math.abs(value - last) <= epsilon[i])
+				continue;
+
+			if (kind[i] == BOOLEAN)
+				SmartDashboard.putBoolean(keys[i], value != 0);
+			else
+				SmartDashboard.putNumber(keys[i], value);
+			sent[i] = value;
+			puts++;
+		}
+		flushes++;
+	}
+
+	/** Starts the consumer on a daemon thread. */
+	public void start() {
+		if (running)
+			return;
+		running = true;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				while (running) {
+					flush();
+					try {
+						Thread.sleep(interval);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, "Telemetry");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void stop() {
+		running = false;
+		if (thread != null)
+			thread.interrupt();
+	}
+
+}
@@ -0,0 +1,63 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Lock-free single-producer, single-consumer ring of telemetry records, each
+ * a slot number and a double. The producer never waits: when the ring is
+ * full the record is dropped and counted. Records are published by the
+ * volatile write of head and released by the volatile write of tail.
+ */
+class TelemetryRing {
+
+	final Thread owner; // the only thread that may offer
+	private final int mask;
+	private final int[] slots;
+	private final long[] values; // double bits
+
+	private volatile long head; // next record to write
+	private volatile long tail; // next record to read
+	private long cachedTail; // producer's last look at tail
+
+	volatile long dropped;
+
+	/** @param capacity rounded up to a power of two */
+	TelemetryRing(Thread owner, int capacity) {
+		this.owner = owner;
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		mask = size - 1;
+		slots = new int[size];
+		values = new long[size];
+	}
+
+	boolean offer(int slot, double value) {
+		long h = head;
+		if (h - cachedTail == slots.length) {
+			cachedTail = tail;
+			if (h - cachedTail == slots.length) {
+				dropped++;
+				return false;
+			}
+		}
+		int i = (int) h & mask;
+		slots[i] = slot;
+		values[i] = Double.doubleToRawLongBits(value);
+		head = h + 1;
+		return true;
+	}
+
+	boolean isEmpty() {
+		return head == tail;
+	}
+
+	/** Hands every waiting record to the telemetry; consumer thread only. */
+	int drain(Telemetry telemetry) {
+		long t = tail;
+		long h = head;
+		for (long n = t; n < h; n++) {
+			int i = (int) n & mask;
+			telemetry.receive(slots[i], Double.longBitsToDouble(values[i]));
+		}
+		tail = h;
+		return (int) (h - t);
+	}
+
+}
@@ -0,0 +1,60 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Immutable snapshot of the PairTracker's filter after one vision frame.
+ * The drive loop extrapolates from it to any moment, so it gets a fresh
+ * estimate every control loop even when vision runs slower.
+ */
+public class TrackState {
+
+	static final TrackState NONE = new TrackState(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+	final int id; // changes whenever the track is re-acquired; 0 = no track
+	final long timestamp; // System.nanoTime() of the last measurement
+	final int misses; // frames since the pair was last seen
+	final double angle, angleRate; // degrees, degrees per second
+	final double x, xRate; // pair center in pixels, pixels per second
+	final double y, yRate;
+
+	public TrackState(int id, long timestamp, int misses, double angle, double angleRate,
+			double x, double xRate, double y, double yRate) {
+		this.id = id;
+		this.timestamp = timestamp;
+		this.misses = misses;
+		this.angle = angle;
+		this.angleRate = angleRate;
+		this.x = x;
+		this.xRate = xRate;
+		this.y = y;
+		this.yRate = yRate;
+	}
+
+	/** True if there is a track whose last measurement is at most maxAge seconds old at now. */
+	public boolean isTracking(long now, double maxAge) {
+		return id != 0 && (now - timestamp) / 1e9 <= maxAge;
+	}
+
+	public double angleAt(long now, double horizon) {
+		return angle + angleRate * age(now, horizon);
+	}
+
+	public double xAt(long now, double horizon) {
+		return x + xRate * age(now, horizon);
+	}
+
+	public double yAt(long now, double horizon) {
+		return y + yRate * age(now, horizon);
+	}
+
+	/** Seconds since the measurement, capped at horizon so predictions can't run away. */
+	private double age(long now, double horizon) {
+		return Math.max(0, Math.min(horizon, (now - timestamp) / 1e9));
+	}
+
+	@Override
+	public String toString() {
+		return "TrackState{id=" + id + ",misses=" + misses + ",angle=" + angle + ",angleRate=" + angleRate
+				+ ",x=" + x + ",y=" + y + "}";
+	}
+
+}
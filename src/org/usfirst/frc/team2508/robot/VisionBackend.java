@@ -0,0 +1,77 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.nio.ByteBuffer;
+
+import com.ni.vision.NIVision.Image;
+
+/**
+ * The image operations the vision pipeline needs, so the same pipeline can
+ * run on NIVision on the roboRIO or on plain Java anywhere else.
+ * <p>
+ * A backend only works on frames it created itself. Backends keep scratch
+ * buffers between calls, so each one must only be used by one thread at a
+ * time. Frame creation and disposal, readPixels and writePixels (called by
+ * the capture thread) and getImage (called by the publish thread) are the
+ * exception.
+ */
+public interface VisionBackend {
+
+	Frame createFrame();
+
+	void disposeFrame(Frame frame);
+
+	/**
+	 * Writes 255 into the frame's mask where the pixel is in range, 0
+	 * elsewhere. Only pixels inside region need to be thresholded.
+	 */
+	void threshold(Frame frame, ColorThreshold range, Region region);
+
+	/**
+	 * Labels the connected particles (4-connected) of the mask inside region
+	 * and replaces the contents of out with one row per particle: bounding
+	 * rect left, top, width, height (in frame coordinates) and pixel area.
+	 * Pass the same region that was thresholded.
+	 * 
+	 * @return the number of particles
+	 */
+	int measure(Frame frame, Region region, TargetBuffer out);
+
+	/**
+	 * Coarse version of threshold + measure: looks at only every factor-th
+	 * pixel of every factor-th row of region. Rects written to out are scaled
+	 * back to frame coordinates, so they are only accurate to about factor
+	 * pixels, and particles thinner than factor may be missed. Leaves the
+	 * frame's full resolution mask undefined.
+	 * 
+	 * @return the number of particles
+	 */
+	int measureDecimated(Frame frame, ColorThreshold range, Region region, int factor, TargetBuffer out);
+
+	/**
+	 * Copies the frame's color pixels into out, starting at its position, as
+	 * width * height little-endian ints packed 0x??RRGGBB, row-major with no
+	 * padding. Advances out's position.
+	 * 
+	 * @return false if this backend cannot read the frame's pixels
+	 */
+	boolean readPixels(Frame frame, ByteBuffer out);
+
+	/**
+	 * Loads a width x height image in the layout written by readPixels into
+	 * the frame, and sets the frame's size. Advances in's position.
+	 * 
+	 * @return false if the frame cannot hold an image of that size
+	 */
+	boolean writePixels(Frame frame, ByteBuffer in, int width, int height);
+
+	/**
+	 * The native image to hand to the CameraServer, or null if this backend
+	 * cannot stream. The frame's overlay is drawn onto the image returned,
+	 * which may be the frame's own.
+	 * 
+	 * @param binary true for the mask, false for the color image
+	 * @param scale divide the width and height by this
+	 */
+	Image getImage(Frame frame, boolean binary, int scale);
+
+}
@@ -0,0 +1,297 @@
+package org.usfirst.frc.team2508.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ni.vision.NIVision.Image;
+
+import edu.wpi.first.wpilibj.CameraServer;
+
+/**
+ * Runs the camera on three threads so a slow frame never holds up driving:
+ * <ul>
+ * <li>capture - grabs frames from the FrameSource (and records them)</li>
+ * <li>process - thresholds, measures particles and pairs targets</li>
+ * <li>publish - sends the frame to the CameraServer</li>
+ * </ul>
+ * Stages hand frames to each other through one-slot queues. When the next
+ * stage is still busy the older waiting frame is dropped, so every stage
+ * always works on the newest frame available.
+ * <p>
+ * All image work goes through a VisionBackend, so the pipeline runs the
+ * same on NIVision or on plain Java off the robot.
+ */
+public class VisionPipeline {
+
+	static final int FRAMES = 4;
+
+	// Particles this small are noise
+	static final double MIN_HEIGHT = 3;
+	static final double MIN_WIDTH = 50;
+
+	private final VisionBackend backend;
+	private FramePool pool;
+	private FrameSource source;
+	private CameraServer camera;
+	private volatile FrameRecorder recorder;
+
+	private final BlockingQueue<Frame> captured = new ArrayBlockingQueue<Frame>(1);
+	private final BlockingQueue<Frame> processed = new ArrayBlockingQueue<Frame>(1);
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	// Only touched by the process thread
+	private final TargetBuffer targets = new TargetBuffer();
+	private final PairingEngine pairing = new PairingEngine();
+	private final RegionTracker tracker = new RegionTracker();
+	private final PairTracker pairTracker = new PairTracker();
+	private final StreamController stream = new StreamController();
+	private int quality = -1; // last quality given to the CameraServer
+	private final Region region = new Region();
+	private final DecimatedMeasurer measurer = new DecimatedMeasurer();
+	private ColorThreshold range = ColorThreshold.TAPE;
+
+	private volatile VisionResult latest = VisionResult.NONE;
+	private volatile boolean filter = false; // false = Raw footage; true = Filter
+	private volatile boolean running = false;
+
+	// Statistics
+	volatile long framesCaptured;
+	volatile long framesProcessed;
+	final AtomicLong framesDropped = new AtomicLong();
+
+	public VisionPipeline(VisionBackend backend) {
+		this.backend = backend;
+	}
+
+	/**
+	 * Starts the three stage threads.
+	 * 
+	 * @param camera where to stream frames, or null to not stream
+	 */
+	public void start(FrameSource source, CameraServer camera) {
+		if (running)
+			return;
+
+		this.source = source;
+		this.camera = camera;
+
+		if (pool == null)
+			pool = new FramePool(backend, FRAMES);
+
+		running = true;
+		startStage("Vision Capture", new Runnable() {
+			public void run() {
+				capture();
+			}
+		});
+		startStage("Vision Process", new Runnable() {
+			public void run() {
+				process();
+			}
+		});
+		startStage("Vision Publish", new Runnable() {
+			public void run() {
+				publish();
+			}
+		});
+	}
+
+	public void stop() {
+		running = false;
+		for (Thread thread : threads)
+			thread.interrupt();
+		threads.clear();
+	}
+
+	public FramePool getPool() {
+		return pool;
+	}
+
+	public VisionBackend getBackend() {
+		return backend;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public void setFilter(boolean filter) {
+		this.filter = filter;
+	}
+
+	public boolean getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Returns the newest completed result. Never blocks; check
+	 * {@link VisionResult#isStale(double)} before acting on it.
+	 */
+	public VisionResult getLatest() {
+		return latest;
+	}
+
+	/** Pairing settings; only change them while the pipeline is stopped. */
+	public PairingEngine getPairing() {
+		return pairing;
+	}
+
+	/** Region-of-interest settings; only change them while the pipeline is stopped. */
+	public RegionTracker getTracker() {
+		return tracker;
+	}
+
+	/**
+	 * Finds candidates on a copy of the frame decimated by factor before
+	 * measuring them at full resolution; 1 turns this off. Only change while
+	 * the pipeline is stopped.
+	 */
+	public void setDecimation(int factor) {
+		measurer.setFactor(factor);
+	}
+
+	/** Records every captured frame into recorder; null stops recording. */
+	public void setRecorder(FrameRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/** Pair smoothed and predicted across frames; read getState() from any thread. */
+	public PairTracker getPairTracker() {
+		return pairTracker;
+	}
+
+	/** Stream rate, size and quality control. */
+	public StreamController getStream() {
+		return stream;
+	}
+
+	/** Only change while the pipeline is stopped. */
+	public void setThreshold(ColorThreshold range) {
+		this.range = range;
+	}
+
+	// -------------------------------------------------------------
+	// Stages
+	// -------------------------------------------------------------
+	private void capture() {
+		while (running) {
+			Frame frame;
+			try {
+				frame = pool.borrow(1.0);
+			} catch (InterruptedException e) {
+				continue;
+			}
+			if (frame == null)
+				continue;
+
+			if (!source.grab(frame)) {
+				pool.release(frame);
+				continue;
+			}
+			frame.timestamp = System.nanoTime();
+			framesCaptured++;
+
+			FrameRecorder recorder = this.recorder;
+			if (recorder != null)
+				recorder.record(backend, frame);
+
+			handOff(captured, frame);
+		}
+	}
+
+	private void process() {
+		while (running) {
+			Frame frame = take(captured);
+			if (frame == null)
+				continue;
+
+			frame.overlay.clear();
+			if (filter) {
+				VisionResult result = analyze(frame);
+				latest = result;
+				pairTracker.update(frame.timestamp, targets, pairing);
+			}
+			framesProcessed++;
+			handOff(processed, frame);
+		}
+	}
+
+	private void publish() {
+		while (running) {
+			Frame frame = take(processed);
+			if (frame == null)
+				continue;
+
+			// Send image to SmartDashboard, if the stream wants one now
+			if (camera != null && stream.shouldSend(System.nanoTime())) {
+				Image image = backend.getImage(frame, filter, stream.getScale());
+				if (image != null) {
+					if (stream.getQuality() != quality) {
+						quality = stream.getQuality();
+						camera.setQuality(quality);
+					}
+					long start = System.nanoTime();
+					camera.setImage(image);
+					stream.sent(System.nanoTime() - start);
+				}
+			}
+			pool.release(frame);
+		}
+	}
+
+	// -------------------------------------------------------------
+	// Image Processing
+	// -------------------------------------------------------------
+	VisionResult analyze(Frame frame) {
+		tracker.next(frame.width, frame.height, region);
+		measurer.measure(backend, frame, range, region, targets);
+		targets.filter(MIN_HEIGHT, MIN_WIDTH);
+
+		int pairs = pairing.pair(targets);
+		Pair first = pairs > 0 ? pairing.get(targets, 0) : null;
+
+		tracker.update(first);
+		if (first != null)
+			first.annotate(frame.overlay);
+
+		return new VisionResult(frame.timestamp, targets.size, pairs, first);
+	}
+
+	// -------------------------------------------------------------
+	// Hand-off helpers
+	// -------------------------------------------------------------
+	private Frame take(BlockingQueue<Frame> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Passes a frame to the next stage, replacing (and returning to the pool) whatever
+	 * frame was still waiting there. Each queue has a single producer, so the
+	 * second offer always succeeds.
+	 */
+	private void handOff(BlockingQueue<Frame> next, Frame frame) {
+		if (!next.offer(frame)) {
+			Frame old = next.poll();
+			if (old != null) {
+				pool.release(old);
+				framesDropped.incrementAndGet();
+			}
+			next.offer(frame);
+		}
+	}
+
+	private void startStage(String name, Runnable stage) {
+		Thread thread = new Thread(stage, name);
+		thread.setDaemon(true);
+		thread.start();
+		threads.add(thread);
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.usfirst.frc.team2508.robot;
+
+/**
+ * Immutable output of one processed frame. The drive loop reads the latest one
+ * from {@link VisionPipeline#getLatest()} without blocking.
+ */
+public class VisionResult {
+
+	static final VisionResult NONE = new VisionResult(0, 0, 0, null);
+
+	final long timestamp; // System.nanoTime() of the frame's capture
+	final int targets;
+	final int pairs;
+	final Pair pair; // first pair found, or null
+	final double angle;
+	final double range;
+	final boolean calibrated; // angle came from inside the calibrated range
+
+	public VisionResult(long timestamp, int targets, int pairs, Pair pair) {
+		this.timestamp = timestamp;
+		this.targets = targets;
+		this.pairs = pairs;
+		this.pair = pair;
+		this.angle = pair == null ? 0 : pair.getAngle();
+		this.range = pair == null ? Double.NaN : pair.getRange();
+		this.calibrated = pair != null && pair.isAngleCalibrated();
+	}
+
+	public boolean hasPair() {
+		return pair != null;
+	}
+
+	public double getAngle() {
+		return angle;
+	}
+
+	/** Meters to the pair, NaN if unknown. */
+	public double getRange() {
+		return range;
+	}
+
+	public boolean isCalibrated() {
+		return calibrated;
+	}
+
+	/** Seconds since the frame behind this result was captured. */
+	public double getAge() {
+		if (timestamp == 0)
+			return Double.POSITIVE_INFINITY;
+		return (System.nanoTime() - timestamp) / 1e9;
+	}
+
+	public boolean isStale(double maxAge) {
+		return getAge() > maxAge;
+	}
+
+	@Override
+	public String toString() {
+		return "VisionResult{targets=" + targets + ",pairs=" + pairs + ",pair=" + pair + "}";
+	}
+
+}